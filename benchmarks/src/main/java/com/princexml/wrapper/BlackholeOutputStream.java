@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+
+/**
+ * OutputStream that hands everything written to it to a JMH {@link Blackhole}.
+ */
+final class BlackholeOutputStream extends OutputStream {
+    private final Blackhole bh;
+
+    BlackholeOutputStream(Blackhole bh) {
+        this.bh = bh;
+    }
+
+    @Override
+    public void write(int b) {
+        bh.consume(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        bh.consume(b);
+        bh.consume(len);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading and writing control protocol chunks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChunkBenchmark {
+    @Param({"0", "1024", "65536", "1048576", "16777216"})
+    int payloadSize;
+
+    private byte[] payload;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        payload = new byte[payloadSize];
+        new Random(42).nextBytes(payload);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payloadSize + 32);
+        Chunk.writeChunk(out, "pdf", payload);
+        encoded = out.toByteArray();
+    }
+
+    @Benchmark
+    public void readChunk(Blackhole bh) throws IOException {
+        bh.consume(Chunk.readChunk(new ByteArrayInputStream(encoded)));
+    }
+
+    @Benchmark
+    public void writeChunk(Blackhole bh) throws IOException {
+        Chunk.writeChunk(new BlackholeOutputStream(bh), "dat", payload);
+    }
+}
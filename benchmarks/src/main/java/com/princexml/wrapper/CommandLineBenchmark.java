@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import com.princexml.wrapper.enums.InputType;
+import com.princexml.wrapper.enums.RasterFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building the command line for a one-shot Prince process.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandLineBenchmark {
+    private Prince typical;
+    private Prince maximal;
+
+    @Setup
+    public void setUp() {
+        typical = new Prince("prince");
+        Configurations.typical(typical);
+        typical.addStyleSheet("invoice.css");
+        typical.setPdfTitle("Invoice 12345");
+
+        maximal = new Prince("prince");
+        Configurations.maximal(maximal);
+        maximal.setInputType(InputType.HTML);
+        maximal.addRemap("https://cdn.example.com/", "/var/cache/cdn");
+        maximal.setPageSize("A4");
+        maximal.setPageMargin("20mm");
+        maximal.setCssDpi(96);
+        maximal.setRasterFormat(RasterFormat.PNG);
+        maximal.setRasterDpi(150);
+        maximal.addOption("no-warn-css");
+    }
+
+    @Benchmark
+    public List<String> typical() {
+        return typical.getJobCommandLine("buffered");
+    }
+
+    @Benchmark
+    public List<String> maximal() {
+        return maximal.getJobCommandLine("buffered");
+    }
+}
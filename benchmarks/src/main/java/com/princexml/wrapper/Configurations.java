@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import com.princexml.wrapper.enums.AuthMethod;
+import com.princexml.wrapper.enums.SslVersion;
+
+/**
+ * Shared option sets used by the benchmarks.
+ */
+final class Configurations {
+    private Configurations() {}
+
+    /**
+     * Options that most production jobs set.
+     */
+    static void typical(AbstractPrince p) {
+        p.setJavaScript(true);
+        p.setBaseUrl("https://example.com/invoices/");
+        p.setMedia("print");
+        p.setTaggedPdf(true);
+    }
+
+    /**
+     * Every option that is shared between {@link Prince} and
+     * {@link PrinceControl}, with values that need escaping where possible.
+     */
+    static void maximal(AbstractPrince p) {
+        typical(p);
+
+        p.setVerbose(true);
+        p.setNoWarnCssUnknown(true);
+        p.setNoWarnCssUnsupported(true);
+        p.setNoNetwork(true);
+        p.setAuthUser("user");
+        p.setAuthPassword("password");
+        p.addAuthMethod(AuthMethod.BASIC);
+        p.addAuthMethod(AuthMethod.DIGEST);
+        p.setHttpTimeout(30);
+        p.addCookie("a=1");
+        p.addCookie("b=2");
+        p.setSslVersion(SslVersion.TLSV1_3);
+        p.setLicenseFile("/etc/prince/license.dat");
+        p.setFailSafe(true);
+
+        for (int i = 0; i < 8; i++) {
+            p.addStyleSheet("styles/sheet-" + i + ".css");
+            p.addScript("scripts/script-" + i + ".js");
+            p.addFileAttachment("attachments/file-" + i + ".pdf");
+        }
+        p.setNoDefaultStyle(true);
+        p.setNoAuthorStyle(true);
+        p.setNoEmbedFonts(true);
+        p.setNoArtificialFonts(true);
+        p.setNoCompress(true);
+        p.setConvertColors(true);
+        p.setFallbackCmykProfile("profiles/cmyk.icc");
+        p.setPdfOutputIntent("profiles/output.icc");
+        p.setPdfId("0123456789abcdef");
+        p.setPdfLang("en-AU");
+        p.setXmp("metadata.xmp");
+        p.setPdfTitle("Quarterly \"Catalogue\"");
+        p.setPdfSubject("Products \\ Services");
+        p.setPdfAuthor("YesLogic");
+        p.setPdfKeywords("catalogue, products, prices");
+        p.setPdfCreator("prince-java-wrapper benchmarks");
+    }
+}
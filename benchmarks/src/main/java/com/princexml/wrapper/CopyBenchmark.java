@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Util#copyInputToOutput} across buffer sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CopyBenchmark {
+    @Param({"4096", "8192", "65536", "262144"})
+    int bufferSize;
+
+    @Param({"65536", "16777216"})
+    int payloadSize;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[payloadSize];
+    }
+
+    @Benchmark
+    public void copyInputToOutput(Blackhole bh) throws IOException {
+        Util.copyInputToOutput(new ByteArrayInputStream(payload), new BlackholeOutputStream(bh), bufferSize);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import com.princexml.wrapper.enums.InputType;
+import com.princexml.wrapper.enums.KeyBits;
+import com.princexml.wrapper.enums.PdfEvent;
+import com.princexml.wrapper.enums.PdfProfile;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building the job description sent to a control process.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JobJsonBenchmark {
+    private PrinceControl typical;
+    private PrinceControl maximal;
+
+    @Setup
+    public void setUp() {
+        typical = new PrinceControl("prince");
+        Configurations.typical(typical);
+        typical.addStyleSheet("invoice.css");
+        typical.setPdfTitle("Invoice 12345");
+
+        maximal = new PrinceControl("prince");
+        Configurations.maximal(maximal);
+        maximal.setInputType(InputType.HTML);
+        maximal.setMaxPasses(5);
+        maximal.setXInclude(true);
+        maximal.setXmlExternalEntities(true);
+        maximal.setIframes(true);
+        maximal.setNoSubsetFonts(true);
+        maximal.setForceIdentityEncoding(true);
+        maximal.setNoObjectStreams(true);
+        maximal.setEncrypt(true);
+        maximal.setKeyBits(KeyBits.BITS128);
+        maximal.setUserPassword("user \"password\"");
+        maximal.setOwnerPassword("owner\\password");
+        maximal.setDisallowPrint(true);
+        maximal.setDisallowModify(true);
+        maximal.setDisallowCopy(true);
+        maximal.setDisallowAnnotate(true);
+        maximal.setAllowCopyForAccessibility(true);
+        maximal.setAllowAssembly(true);
+        maximal.setPdfProfile(PdfProfile.PDFA_1A_AND_PDFUA_1);
+        maximal.setPdfScript("open.js");
+        maximal.addPdfEventScript(PdfEvent.WILL_CLOSE, "close.js");
+        maximal.addPdfEventScript(PdfEvent.DID_PRINT, "print.js");
+        maximal.addFileAttachment(new byte[] {0}, "data.bin", "Binary data");
+        maximal.setPdfForms(true);
+    }
+
+    @Benchmark
+    public int typical() {
+        return typical.getJobJson().length();
+    }
+
+    @Benchmark
+    public int maximal() {
+        return maximal.getJobJson().length();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import com.princexml.wrapper.events.MessageType;
+import com.princexml.wrapper.events.PrinceEvents;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing of structured log output over synthetic logs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReadMessagesBenchmark {
+    @Param({"10", "1000", "100000"})
+    int lines;
+
+    private byte[] log;
+    private Prince prince;
+    private long received;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines - 1; i++) {
+            switch (i % 4) {
+                case 0:
+                    sb.append("msg|wrn|file:///tmp/doc.html:").append(i).append("|unsupported CSS property\n");
+                    break;
+                case 1:
+                    sb.append("msg|inf||loading document ").append(i).append('\n');
+                    break;
+                case 2:
+                    sb.append("dat|total-").append(i).append('|').append(i * 31).append('\n');
+                    break;
+                default:
+                    sb.append("prince: warning: unstructured line ").append(i).append('\n');
+                    break;
+            }
+        }
+        sb.append("fin|success\n");
+        log = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        prince = new Prince("prince", new PrinceEvents() {
+            @Override
+            public void onMessage(MessageType msgType, String msgLocation, String msgText) {
+                received++;
+            }
+
+            @Override
+            public void onDataMessage(String name, String value) {
+                received++;
+            }
+        });
+    }
+
+    @Benchmark
+    public boolean readMessages() throws IOException {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(log), StandardCharsets.UTF_8))) {
+            return prince.readMessages(br);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper.load;
+
+import com.princexml.wrapper.enums.InputType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A weighted mix of documents to convert.
+ */
+final class DocumentMix {
+    private final List<Target.Document> documents = new ArrayList<>();
+    private int totalWeight;
+
+    /**
+     * Add a document from a specification of the form {@code path[:weight]}.
+     * The input type is derived from the file extension.
+     */
+    void add(String spec) throws IOException {
+        int weight = 1;
+        String path = spec;
+
+        int colon = spec.lastIndexOf(':');
+        if (colon > 1 && spec.substring(colon + 1).matches("\\d+")) {
+            path = spec.substring(0, colon);
+            weight = Integer.parseInt(spec.substring(colon + 1));
+        }
+        if (weight < 1) {
+            throw new IllegalArgumentException("invalid weight (must be > 0): " + spec);
+        }
+
+        Path p = Paths.get(path);
+        String name = p.getFileName().toString();
+        InputType inputType = name.endsWith(".xml") || name.endsWith(".xhtml") ? InputType.XML : InputType.HTML;
+
+        documents.add(new Target.Document(name, Files.readAllBytes(p), inputType, weight));
+        totalWeight += weight;
+    }
+
+    boolean isEmpty() {
+        return documents.isEmpty();
+    }
+
+    List<Target.Document> getDocuments() {
+        return documents;
+    }
+
+    Target.Document next(Random random) {
+        int r = random.nextInt(totalWeight);
+        for (Target.Document d : documents) {
+            r -= d.getWeight();
+            if (r < 0) {
+                return d;
+            }
+        }
+        throw new IllegalStateException("empty document mix");
+    }
+}
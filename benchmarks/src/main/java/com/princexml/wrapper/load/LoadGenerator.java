@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.FileOutputStream;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Open-loop load generator for Prince conversions.
+ * <p>
+ * Requests are issued on a fixed schedule derived from the target rate,
+ * regardless of whether earlier requests have completed. Two latencies are
+ * recorded for every request issued after the warmup:
+ * <ul>
+ *     <li>service time, measured from when a worker thread actually started
+ *         the conversion, and</li>
+ *     <li>response time, measured from when the request was scheduled to be
+ *         sent. This is corrected for coordinated omission: time spent
+ *         queued behind slow requests counts against the latency.</li>
+ * </ul>
+ * Usage:
+ * <pre>
+ * java -cp target/benchmarks.jar com.princexml.wrapper.load.LoadGenerator \
+ *     --prince=/usr/bin/prince --mode=control --rate=50 --concurrency=8 \
+ *     --duration=60 --warmup=10 --doc=invoice.html:9 --doc=catalogue.html:1
+ * </pre>
+ */
+public final class LoadGenerator {
+    private static final long MAX_LATENCY = TimeUnit.MINUTES.toNanos(10);
+
+    private String princePath;
+    private String mode = "prince";
+    private double rate = 10;
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+    private long duration = 30;
+    private long warmup = 5;
+    private String histogramPath;
+    private final DocumentMix mix = new DocumentMix();
+
+    private final Recorder serviceTimes = new Recorder(MAX_LATENCY, 3);
+    private final Recorder responseTimes = new Recorder(MAX_LATENCY, 3);
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator g = new LoadGenerator();
+        g.parseArgs(args);
+
+        try (Target target = g.createTarget()) {
+            g.run(target);
+        }
+    }
+
+    private void parseArgs(String[] args) throws IOException {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String key = eq < 0 ? arg : arg.substring(0, eq);
+            String value = eq < 0 ? "" : arg.substring(eq + 1);
+
+            switch (key) {
+                case "--prince": princePath = value; break;
+                case "--mode": mode = value; break;
+                case "--rate": rate = Double.parseDouble(value); break;
+                case "--concurrency": concurrency = Integer.parseInt(value); break;
+                case "--duration": duration = Long.parseLong(value); break;
+                case "--warmup": warmup = Long.parseLong(value); break;
+                case "--doc": mix.add(value); break;
+                case "--histogram": histogramPath = value; break;
+                default: throw new IllegalArgumentException("unknown argument: " + arg);
+            }
+        }
+
+        if (princePath == null) {
+            throw new IllegalArgumentException("--prince is required");
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("at least one --doc is required");
+        }
+        if (rate <= 0 || concurrency < 1 || duration < 1 || warmup < 0) {
+            throw new IllegalArgumentException("rate, concurrency and duration must be > 0, and warmup >= 0");
+        }
+    }
+
+    private Target createTarget() throws IOException {
+        switch (mode) {
+            case "prince": return Target.prince(princePath);
+            case "control": return Target.control(princePath, concurrency);
+            default: throw new IllegalArgumentException("unknown mode: " + mode);
+        }
+    }
+
+    private void run(Target target) throws InterruptedException, IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        Random random = new Random(42);
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+
+        System.out.printf("%s mode, %.1f req/s, concurrency %d, %d s warmup, %d s measurement%n",
+                mode, rate, concurrency, warmup, duration);
+
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(warmup);
+        long end = measureStart + TimeUnit.SECONDS.toNanos(duration);
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended >= end) {
+                break;
+            }
+            // Warmup requests that complete after the warmup are not
+            // recorded either.
+            boolean measured = intended >= measureStart;
+
+            long delay = intended - System.nanoTime();
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+
+            Target.Document document = mix.next(random);
+            workers.execute(() -> convert(target, document, intended, measured));
+        }
+
+        workers.shutdown();
+        workers.awaitTermination(MAX_LATENCY, TimeUnit.NANOSECONDS);
+        long elapsed = Math.max(System.nanoTime(), end) - measureStart;
+
+        report(elapsed);
+    }
+
+    private void convert(Target target, Target.Document document, long intended, boolean measured) {
+        long started = System.nanoTime();
+        boolean ok;
+        try {
+            ok = target.convert(document, NullOutputStream.INSTANCE);
+        } catch (IOException | RuntimeException e) {
+            ok = false;
+        }
+        long finished = System.nanoTime();
+        if (!measured) {
+            return;
+        }
+
+        serviceTimes.recordValue(Math.min(finished - started, MAX_LATENCY));
+        responseTimes.recordValue(Math.min(finished - intended, MAX_LATENCY));
+        (ok ? completed : failed).incrementAndGet();
+    }
+
+    private void report(long elapsed) throws IOException {
+        Histogram service = serviceTimes.getIntervalHistogram();
+        Histogram response = responseTimes.getIntervalHistogram();
+        double seconds = elapsed / 1e9;
+
+        System.out.printf("completed %d, failed %d, throughput %.2f req/s%n",
+                completed.get(), failed.get(), completed.get() / seconds);
+        System.out.printf("%-28s %10s %10s %10s %10s %10s%n", "latency (ms)", "p50", "p90", "p99", "p99.9", "max");
+        printRow("service time", service);
+        printRow("response time (CO-corrected)", response);
+
+        if (histogramPath != null) {
+            try (PrintStream out = new PrintStream(new FileOutputStream(histogramPath))) {
+                out.println("# response time (CO-corrected), ms");
+                response.outputPercentileDistribution(out, 1e6);
+            }
+        }
+    }
+
+    private static void printRow(String name, Histogram h) {
+        System.out.printf("%-28s %10.2f %10.2f %10.2f %10.2f %10.2f%n", name,
+                h.getValueAtPercentile(50) / 1e6,
+                h.getValueAtPercentile(90) / 1e6,
+                h.getValueAtPercentile(99) / 1e6,
+                h.getValueAtPercentile(99.9) / 1e6,
+                h.getMaxValue() / 1e6);
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(int b) {}
+
+        @Override
+        public void write(byte[] b, int off, int len) {}
+    }
+}
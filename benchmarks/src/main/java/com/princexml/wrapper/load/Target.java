@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper.load;
+
+import com.princexml.wrapper.Prince;
+import com.princexml.wrapper.PrinceControl;
+import com.princexml.wrapper.enums.InputType;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Something that can convert a document, driven by the {@link LoadGenerator}.
+ * Implementations must be safe to call from {@code concurrency} threads at
+ * once.
+ */
+public interface Target extends Closeable {
+    /**
+     * Convert a document.
+     * @param document The document to convert.
+     * @param output Where to write the converted output.
+     * @return true if the conversion succeeded.
+     * @throws IOException If an I/O error occurs.
+     */
+    boolean convert(Document document, OutputStream output) throws IOException;
+
+    @Override
+    default void close() throws IOException {}
+
+    /**
+     * A target that invokes a new Prince process for each document.
+     * @param princePath The path of the Prince executable.
+     * @return The target.
+     */
+    static Target prince(String princePath) {
+        return (document, output) -> {
+            Prince p = new Prince(princePath);
+            p.setInputType(document.getInputType());
+            return p.convert(new ByteArrayInputStream(document.getBytes()), output);
+        };
+    }
+
+    /**
+     * A target backed by {@code count} persistent control processes, each
+     * used by one conversion at a time.
+     * @param princePath The path of the Prince executable.
+     * @param count The number of control processes to start.
+     * @return The target.
+     * @throws IOException If a control process fails to start.
+     */
+    static Target control(String princePath, int count) throws IOException {
+        BlockingQueue<PrinceControl> controls = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; i++) {
+            PrinceControl p = new PrinceControl(princePath);
+            p.start();
+            controls.add(p);
+        }
+
+        return new Target() {
+            @Override
+            public boolean convert(Document document, OutputStream output) throws IOException {
+                PrinceControl p;
+                try {
+                    p = controls.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while waiting for a control process", e);
+                }
+
+                try {
+                    p.setInputType(document.getInputType());
+                    return p.convert(new ByteArrayInputStream(document.getBytes()), output);
+                } finally {
+                    controls.add(p);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                for (PrinceControl p : controls) {
+                    p.stop();
+                }
+            }
+        };
+    }
+
+    /**
+     * A document in the mix, held in memory so that reading it does not
+     * distort the measurements.
+     */
+    final class Document {
+        private final String name;
+        private final byte[] bytes;
+        private final InputType inputType;
+        private final int weight;
+
+        Document(String name, byte[] bytes, InputType inputType, int weight) {
+            this.name = name;
+            this.bytes = bytes;
+            this.inputType = inputType;
+            this.weight = weight;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public InputType getInputType() {
+            return inputType;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2021-2023 YesLogic Pty. Ltd.
+ * Copyright (C) 2021-2023, 2026 YesLogic Pty. Ltd.
  * All rights reserved.
  */
 
@@ -13,17 +13,28 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.xml.XMLConstants;
+import javax.xml.transform.*;
+import javax.xml.transform.stream.StreamResult;
+
 import static com.princexml.wrapper.CommandLine.toCommand;
 import static com.princexml.wrapper.CommandLine.toCommands;
 
 abstract class AbstractPrince {
+    // Not thread-safe, so only used to create transformers while locked.
+    private static final TransformerFactory TRANSFORMER_FACTORY = newTransformerFactory();
+
     private final String princePath;
     private final PrinceEvents events;
+    // Held while calling events, which can come from the stderr thread of a
+    // control process as well as from the thread running the conversion.
+    private final Object eventLock = new Object();
 
     // Logging options.
     private boolean verbose;
@@ -81,7 +92,7 @@ abstract class AbstractPrince {
     protected PdfProfile pdfProfile;
     protected String pdfOutputIntent;
     protected String pdfScript;
-    protected Map<PdfEvent, String> pdfEventScripts = new HashMap<>();
+    protected Map<PdfEvent, String> pdfEventScripts = new EnumMap<>(PdfEvent.class);
     protected final List<FileAttachment> fileAttachments = new ArrayList<>();
     protected boolean noArtificialFonts;
     protected boolean noEmbedFonts;
@@ -127,6 +138,9 @@ abstract class AbstractPrince {
     private boolean failPdfTagError;
     private boolean failInvalidLicense;
 
+    protected OutputCache outputCache;
+    protected MemoryBudget memoryBudget;
+
     protected AbstractPrince(String princePath) {
         this(princePath, null);
     }
@@ -185,6 +199,75 @@ abstract class AbstractPrince {
      */
     public abstract boolean convertString(String input, OutputStream output) throws IOException;
 
+    /**
+     * Convert an XML or HTML document generated by {@code producer}, such as
+     * a template engine, to a PDF file. The producer writes the document to
+     * a {@code Writer}, which encodes it as UTF-8 without first building the
+     * whole document as a String.
+     * @param producer Writes the XML or HTML document.
+     * @param output The OutputStream to which Prince will write the PDF output.
+     * @return true if a PDF file was generated successfully.
+     * @throws IOException If an I/O error occurs, including one thrown by the
+     *                     producer.
+     */
+    public abstract boolean convert(IOConsumer<Writer> producer, OutputStream output) throws IOException;
+
+    /**
+     * Convert an XML document, such as a DOM tree wrapped in a
+     * {@link javax.xml.transform.dom.DOMSource}, to a PDF file. The document
+     * is serialized as UTF-8 straight into the conversion, as with
+     * {@link #convert(IOConsumer, OutputStream)}, rather than into a String.
+     * The input type has to be set, normally to XML.
+     * @param input The XML document.
+     * @param output The OutputStream to which Prince will write the PDF output.
+     * @return true if a PDF file was generated successfully.
+     * @throws IOException If an I/O error occurs, or the document cannot be
+     *                     serialized.
+     */
+    public boolean convert(Source input, OutputStream output) throws IOException {
+        return convert(w -> serialize(input, w), output);
+    }
+
+    /**
+     * Serialize an XML document with an identity transform.
+     */
+    static void serialize(Source input, Writer writer) throws IOException {
+        Transformer transformer;
+        synchronized (TRANSFORMER_FACTORY) {
+            try {
+                transformer = TRANSFORMER_FACTORY.newTransformer();
+            } catch (TransformerConfigurationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        // The writer encodes as UTF-8, so declare that in the output.
+        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+
+        try {
+            transformer.transform(input, new StreamResult(writer));
+        } catch (TransformerException e) {
+            Throwable cause = e.getException() != null ? e.getException() : e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("failed to serialize XML input: " + e.getMessageAndLocation(), e);
+        }
+    }
+
+    private static TransformerFactory newTransformerFactory() {
+        TransformerFactory factory = TransformerFactory.newInstance();
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (TransformerConfigurationException e) {
+            // Every conforming implementation supports secure processing.
+        }
+        return factory;
+    }
+
+    String getPrincePath() {
+        return princePath;
+    }
+
     protected List<String> getBaseCommandLine() {
         List<String> cmdLine = new ArrayList<>();
 
@@ -235,6 +318,12 @@ abstract class AbstractPrince {
         return cmdLine;
     }
 
+    /**
+     * Called whenever an option changes, so that subclasses can discard
+     * anything derived from the options.
+     */
+    protected void configChanged() {}
+
     protected boolean readMessages(BufferedReader reader) throws IOException {
         String result = "";
         String line = reader.readLine();
@@ -279,7 +368,9 @@ abstract class AbstractPrince {
             String msgLocation = tokens[1];
             String msgText = tokens[2];
 
-            events.onMessage(msgType, msgLocation, msgText);
+            synchronized (eventLock) {
+                events.onMessage(msgType, msgLocation, msgText);
+            }
         }
     }
 
@@ -291,26 +382,81 @@ abstract class AbstractPrince {
             String name = tokens[0];
             String value = tokens[1];
 
-            events.onDataMessage(name, value);
+            synchronized (eventLock) {
+                events.onDataMessage(name, value);
+            }
         }
     }
 
-    private void handleNonStructuredMessage(String msg) {
+    void handleNonStructuredMessage(String msg) {
         if (events == null) { return; }
 
         String princeWrn = "prince: warning: ";
         String princeErr = "prince: error: ";
 
+        MessageType msgType;
+        String msgText;
         if (msg.startsWith(princeWrn)) {
-            String msgText = msg.substring(princeWrn.length());
-            events.onMessage(MessageType.WRN, "", msgText);
+            msgType = MessageType.WRN;
+            msgText = msg.substring(princeWrn.length());
         } else if (msg.startsWith(princeErr)) {
-            String msgText = msg.substring(princeErr.length());
-            events.onMessage(MessageType.ERR, "", msgText);
+            msgType = MessageType.ERR;
+            msgText = msg.substring(princeErr.length());
         } else {
             // Just treat everything else as debug messages.
-            events.onMessage(MessageType.DBG, "", msg);
+            msgType = MessageType.DBG;
+            msgText = msg;
         }
+
+        synchronized (eventLock) {
+            events.onMessage(msgType, "", msgText);
+        }
+    }
+
+    /**
+     * Add the local files referenced by the options to a fingerprint, so
+     * that changes to their content are detected.
+     */
+    void fingerprintReferences(Fingerprint fingerprint) throws IOException {
+        for (String s : styleSheets) { fingerprint.addReference(s); }
+        for (String s : scripts) { fingerprint.addReference(s); }
+        for (FileAttachment fa : fileAttachments) { fingerprint.addReference(fa.url); }
+        if (pdfScript != null) { fingerprint.addReference(pdfScript); }
+        for (String s : pdfEventScripts.values()) { fingerprint.addReference(s); }
+        if (pdfOutputIntent != null) { fingerprint.addReference(pdfOutputIntent); }
+        if (fallbackCmykProfile != null) { fingerprint.addReference(fallbackCmykProfile); }
+        if (xmp != null) { fingerprint.addReference(xmp); }
+    }
+
+    /**
+     * Cache the outputs of conversions to an {@code OutputStream}, or for
+     * {@link PrinceControl} also to a {@code Path}, in {@code outputCache},
+     * which may be shared with other instances. Files referenced from
+     * within documents, such as images and linked style sheets, are not
+     * part of the cache key, see {@link OutputCache}. Default value is
+     * {@code null} (no caching).
+     * @param outputCache The output cache.
+     */
+    public void setOutputCache(OutputCache outputCache) {
+        this.outputCache = outputCache;
+    }
+
+    /**
+     * Limit the heap memory used to buffer documents, resources and output
+     * to {@code memoryBudget}, which may be shared with other instances.
+     * Default value is {@code null} (no limit).
+     * @param memoryBudget The memory budget.
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Reserve an estimated footprint against the memory budget, or return
+     * null if there is no budget.
+     */
+    MemoryBudget.Reservation reserve(long estimate) throws IOException {
+        return memoryBudget != null ? memoryBudget.reserve(estimate) : null;
     }
 
     //region Logging options.
@@ -320,6 +466,7 @@ abstract class AbstractPrince {
      */
     public void setVerbose(boolean verbose) {
         this.verbose = verbose;
+        configChanged();
     }
 
     /**
@@ -328,6 +475,7 @@ abstract class AbstractPrince {
      */
     public void setDebug(boolean debug) {
         this.debug = debug;
+        configChanged();
     }
 
     /**
@@ -339,6 +487,7 @@ abstract class AbstractPrince {
      */
     public void setLog(String log) {
         this.log = log;
+        configChanged();
     }
 
     /**
@@ -347,6 +496,7 @@ abstract class AbstractPrince {
      */
     public void setNoWarnCssUnknown(boolean noWarnCssUnknown) {
         this.noWarnCssUnknown = noWarnCssUnknown;
+        configChanged();
     }
 
     /**
@@ -355,6 +505,7 @@ abstract class AbstractPrince {
      */
     public void setNoWarnCssUnsupported(boolean noWarnCssUnsupported) {
         this.noWarnCssUnsupported = noWarnCssUnsupported;
+        configChanged();
     }
     //endregion
 
@@ -371,6 +522,7 @@ abstract class AbstractPrince {
      */
     public void setInputType(InputType inputType) {
         this.inputType = inputType;
+        configChanged();
     }
 
     /**
@@ -385,6 +537,7 @@ abstract class AbstractPrince {
      */
     public void setBaseUrl(String baseUrl) {
         this.baseUrl = baseUrl;
+        configChanged();
     }
 
     /**
@@ -393,6 +546,7 @@ abstract class AbstractPrince {
      */
     public void setIframes(boolean iframes) {
         this.iframes = iframes;
+        configChanged();
     }
 
     /**
@@ -404,6 +558,7 @@ abstract class AbstractPrince {
      */
     public void setXInclude(boolean xInclude) {
         this.xInclude = xInclude;
+        configChanged();
     }
 
     /**
@@ -412,6 +567,7 @@ abstract class AbstractPrince {
      */
     public void setXmlExternalEntities(boolean xmlExternalEntities) {
         this.xmlExternalEntities = xmlExternalEntities;
+        configChanged();
     }
 
     /**
@@ -420,6 +576,7 @@ abstract class AbstractPrince {
      */
     public void setNoLocalFiles(boolean noLocalFiles) {
         this.noLocalFiles = noLocalFiles;
+        configChanged();
     }
     //endregion
 
@@ -430,6 +587,7 @@ abstract class AbstractPrince {
      */
     public void setNoNetwork(boolean noNetwork) {
         this.noNetwork = noNetwork;
+        configChanged();
     }
 
     /**
@@ -438,6 +596,7 @@ abstract class AbstractPrince {
      */
     public void setNoRedirects(boolean noRedirects) {
         this.noRedirects = noRedirects;
+        configChanged();
     }
 
     /**
@@ -446,6 +605,7 @@ abstract class AbstractPrince {
      */
     public void setAuthUser(String authUser) {
         this.authUser = authUser;
+        configChanged();
     }
 
     /**
@@ -454,6 +614,7 @@ abstract class AbstractPrince {
      */
     public void setAuthPassword(String authPassword) {
         this.authPassword = authPassword;
+        configChanged();
     }
 
     /**
@@ -463,6 +624,7 @@ abstract class AbstractPrince {
      */
     public void setAuthServer(String authServer) {
         this.authServer = authServer;
+        configChanged();
     }
 
     /**
@@ -472,6 +634,7 @@ abstract class AbstractPrince {
      */
     public void setAuthScheme(AuthScheme authScheme) {
         this.authScheme = authScheme;
+        configChanged();
     }
 
     /**
@@ -481,6 +644,7 @@ abstract class AbstractPrince {
      */
     public void addAuthMethod(AuthMethod authMethod) {
         this.authMethods.add(authMethod);
+        configChanged();
     }
 
     /**
@@ -489,6 +653,7 @@ abstract class AbstractPrince {
      */
     public void clearAuthMethods() {
         this.authMethods.clear();
+        configChanged();
     }
 
     /**
@@ -497,6 +662,7 @@ abstract class AbstractPrince {
      */
     public void setNoAuthPreemptive(boolean noAuthPreemptive) {
         this.noAuthPreemptive = noAuthPreemptive;
+        configChanged();
     }
 
     /**
@@ -505,6 +671,7 @@ abstract class AbstractPrince {
      */
     public void setHttpProxy(String httpProxy) {
         this.httpProxy = httpProxy;
+        configChanged();
     }
 
     /**
@@ -516,6 +683,7 @@ abstract class AbstractPrince {
             throw new IllegalArgumentException("invalid httpTimeout value (must be > 0)");
         }
         this.httpTimeout = httpTimeout;
+        configChanged();
     }
 
     /**
@@ -525,6 +693,7 @@ abstract class AbstractPrince {
      */
     public void addCookie(String cookie) {
         this.cookies.add(cookie);
+        configChanged();
     }
 
     /**
@@ -532,6 +701,7 @@ abstract class AbstractPrince {
      */
     public void clearCookies() {
         this.cookies.clear();
+        configChanged();
     }
 
     /**
@@ -540,6 +710,7 @@ abstract class AbstractPrince {
      */
     public void setCookieJar(String cookieJar) {
         this.cookieJar = cookieJar;
+        configChanged();
     }
 
     /**
@@ -548,6 +719,7 @@ abstract class AbstractPrince {
      */
     public void setSslCaCert(String sslCaCert) {
         this.sslCaCert = sslCaCert;
+        configChanged();
     }
 
     /**
@@ -556,6 +728,7 @@ abstract class AbstractPrince {
      */
     public void setSslCaPath(String sslCaPath) {
         this.sslCaPath = sslCaPath;
+        configChanged();
     }
 
     /**
@@ -566,6 +739,7 @@ abstract class AbstractPrince {
      */
     public void setSslCert(String sslCert) {
         this.sslCert = sslCert;
+        configChanged();
     }
 
     /**
@@ -575,6 +749,7 @@ abstract class AbstractPrince {
      */
     public void setSslCertType(SslType sslCertType) {
         this.sslCertType = sslCertType;
+        configChanged();
     }
 
     /**
@@ -584,6 +759,7 @@ abstract class AbstractPrince {
      */
     public void setSslKey(String sslKey) {
         this.sslKey = sslKey;
+        configChanged();
     }
 
     /**
@@ -593,6 +769,7 @@ abstract class AbstractPrince {
      */
     public void setSslKeyType(SslType sslKeyType) {
         this.sslKeyType = sslKeyType;
+        configChanged();
     }
 
     /**
@@ -601,6 +778,7 @@ abstract class AbstractPrince {
      */
     public void setSslKeyPassword(String sslKeyPassword) {
         this.sslKeyPassword = sslKeyPassword;
+        configChanged();
     }
 
     /**
@@ -610,6 +788,7 @@ abstract class AbstractPrince {
      */
     public void setSslVersion(SslVersion sslVersion) {
         this.sslVersion = sslVersion;
+        configChanged();
     }
 
     /**
@@ -618,6 +797,7 @@ abstract class AbstractPrince {
      */
     public void setInsecure(boolean insecure) {
         this.insecure = insecure;
+        configChanged();
     }
 
     /**
@@ -626,6 +806,7 @@ abstract class AbstractPrince {
      */
     public void setNoParallelDownloads(boolean noParallelDownloads) {
         this.noParallelDownloads = noParallelDownloads;
+        configChanged();
     }
     //endregion
 
@@ -637,6 +818,7 @@ abstract class AbstractPrince {
      */
     public void setJavaScript(boolean javaScript) {
         this.javaScript = javaScript;
+        configChanged();
     }
 
     /**
@@ -646,6 +828,7 @@ abstract class AbstractPrince {
      */
     public void addScript(String script) {
         this.scripts.add(script);
+        configChanged();
     }
 
     /**
@@ -653,6 +836,7 @@ abstract class AbstractPrince {
      */
     public void clearScripts() {
         this.scripts.clear();
+        configChanged();
     }
 
     /**
@@ -665,6 +849,7 @@ abstract class AbstractPrince {
             throw new IllegalArgumentException("invalid maxPasses value (must be > 0)");
         }
         this.maxPasses = maxPasses;
+        configChanged();
     }
     //endregion
 
@@ -676,6 +861,7 @@ abstract class AbstractPrince {
      */
     public void addStyleSheet(String styleSheet) {
         this.styleSheets.add(styleSheet);
+        configChanged();
     }
 
     /**
@@ -684,6 +870,7 @@ abstract class AbstractPrince {
      */
     public void clearStyleSheets() {
         this.styleSheets.clear();
+        configChanged();
     }
 
     /**
@@ -692,6 +879,7 @@ abstract class AbstractPrince {
      */
     public void setMedia(String media) {
         this.media = media;
+        configChanged();
     }
 
     /**
@@ -700,6 +888,7 @@ abstract class AbstractPrince {
      */
     public void setNoAuthorStyle(boolean noAuthorStyle) {
         this.noAuthorStyle = noAuthorStyle;
+        configChanged();
     }
 
     /**
@@ -708,6 +897,7 @@ abstract class AbstractPrince {
      */
     public void setNoDefaultStyle(boolean noDefaultStyle) {
         this.noDefaultStyle = noDefaultStyle;
+        configChanged();
     }
     //endregion
 
@@ -718,6 +908,7 @@ abstract class AbstractPrince {
      */
     public void setPdfId(String pdfId) {
         this.pdfId = pdfId;
+        configChanged();
     }
 
     /**
@@ -726,6 +917,7 @@ abstract class AbstractPrince {
      */
     public void setPdfLang(String pdfLang) {
         this.pdfLang = pdfLang;
+        configChanged();
     }
 
     /**
@@ -734,6 +926,7 @@ abstract class AbstractPrince {
      */
     public void setPdfProfile(PdfProfile pdfProfile) {
         this.pdfProfile = pdfProfile;
+        configChanged();
     }
 
     /**
@@ -742,6 +935,7 @@ abstract class AbstractPrince {
      */
     public void setPdfOutputIntent(String pdfOutputIntent) {
         this.pdfOutputIntent = pdfOutputIntent;
+        configChanged();
     }
 
     /**
@@ -750,6 +944,7 @@ abstract class AbstractPrince {
      */
     public void setPdfScript(String pdfScript) {
         this.pdfScript = pdfScript;
+        configChanged();
     }
 
     /**
@@ -759,6 +954,7 @@ abstract class AbstractPrince {
      */
     public void addPdfEventScript(PdfEvent pdfEvent, String pdfScript) {
         this.pdfEventScripts.put(pdfEvent, pdfScript);
+        configChanged();
     }
 
     /**
@@ -767,6 +963,7 @@ abstract class AbstractPrince {
      */
     public void clearPdfEventScripts() {
         this.pdfEventScripts.clear();
+        configChanged();
     }
 
     /**
@@ -776,6 +973,7 @@ abstract class AbstractPrince {
      */
     public void addFileAttachment(String fileAttachment) {
         this.fileAttachments.add(new FileAttachment(fileAttachment));
+        configChanged();
     }
 
     /**
@@ -783,6 +981,7 @@ abstract class AbstractPrince {
      */
     public void clearFileAttachments() {
         this.fileAttachments.clear();
+        configChanged();
     }
 
     /**
@@ -792,6 +991,7 @@ abstract class AbstractPrince {
      */
     public void setNoArtificialFonts(boolean noArtificialFonts) {
         this.noArtificialFonts = noArtificialFonts;
+        configChanged();
     }
 
     /**
@@ -801,6 +1001,7 @@ abstract class AbstractPrince {
      */
     public void setNoEmbedFonts(boolean noEmbedFonts) {
         this.noEmbedFonts = noEmbedFonts;
+        configChanged();
     }
 
     /**
@@ -810,6 +1011,7 @@ abstract class AbstractPrince {
      */
     public void setNoSubsetFonts(boolean noSubsetFonts) {
         this.noSubsetFonts = noSubsetFonts;
+        configChanged();
     }
 
     /**
@@ -820,6 +1022,7 @@ abstract class AbstractPrince {
      */
     public void setForceIdentityEncoding(boolean forceIdentityEncoding) {
         this.forceIdentityEncoding = forceIdentityEncoding;
+        configChanged();
     }
 
     /**
@@ -829,6 +1032,7 @@ abstract class AbstractPrince {
      */
     public void setNoCompress(boolean noCompress) {
         this.noCompress = noCompress;
+        configChanged();
     }
 
     /**
@@ -837,6 +1041,7 @@ abstract class AbstractPrince {
      */
     public void setNoObjectStreams(boolean noObjectStreams) {
         this.noObjectStreams = noObjectStreams;
+        configChanged();
     }
 
     /**
@@ -845,6 +1050,7 @@ abstract class AbstractPrince {
      */
     public void setConvertColors(boolean convertColors) {
         this.convertColors = convertColors;
+        configChanged();
     }
 
     /**
@@ -853,6 +1059,7 @@ abstract class AbstractPrince {
      */
     public void setFallbackCmykProfile(String fallbackCmykProfile) {
         this.fallbackCmykProfile = fallbackCmykProfile;
+        configChanged();
     }
 
     /**
@@ -861,6 +1068,7 @@ abstract class AbstractPrince {
      */
     public void setTaggedPdf(boolean taggedPdf) {
         this.taggedPdf = taggedPdf;
+        configChanged();
     }
 
     /**
@@ -869,6 +1077,7 @@ abstract class AbstractPrince {
      */
     public void setPdfForms(boolean pdfForms) {
         this.pdfForms = pdfForms;
+        configChanged();
     }
     //endregion
 
@@ -879,6 +1088,7 @@ abstract class AbstractPrince {
      */
     public void setPdfTitle(String pdfTitle) {
         this.pdfTitle = pdfTitle;
+        configChanged();
     }
 
     /**
@@ -887,6 +1097,7 @@ abstract class AbstractPrince {
      */
     public void setPdfSubject(String pdfSubject) {
         this.pdfSubject = pdfSubject;
+        configChanged();
     }
 
     /**
@@ -895,6 +1106,7 @@ abstract class AbstractPrince {
      */
     public void setPdfAuthor(String pdfAuthor) {
         this.pdfAuthor = pdfAuthor;
+        configChanged();
     }
 
     /**
@@ -903,6 +1115,7 @@ abstract class AbstractPrince {
      */
     public void setPdfKeywords(String pdfKeywords) {
         this.pdfKeywords = pdfKeywords;
+        configChanged();
     }
 
     /**
@@ -911,6 +1124,7 @@ abstract class AbstractPrince {
      */
     public void setPdfCreator(String pdfCreator) {
         this.pdfCreator = pdfCreator;
+        configChanged();
     }
 
     /**
@@ -920,6 +1134,7 @@ abstract class AbstractPrince {
      */
     public void setXmp(String xmp) {
         this.xmp = xmp;
+        configChanged();
     }
     //endregion
 
@@ -931,6 +1146,7 @@ abstract class AbstractPrince {
      */
     public void setEncrypt(boolean encrypt) {
         this.encrypt = encrypt;
+        configChanged();
     }
 
     /**
@@ -940,6 +1156,7 @@ abstract class AbstractPrince {
      */
     public void setKeyBits(KeyBits keyBits) {
         this.keyBits = keyBits;
+        configChanged();
     }
 
     /**
@@ -948,6 +1165,7 @@ abstract class AbstractPrince {
      */
     public void setUserPassword(String userPassword) {
         this.userPassword = userPassword;
+        configChanged();
     }
 
     /**
@@ -956,6 +1174,7 @@ abstract class AbstractPrince {
      */
     public void setOwnerPassword(String ownerPassword) {
         this.ownerPassword = ownerPassword;
+        configChanged();
     }
 
     /**
@@ -964,6 +1183,7 @@ abstract class AbstractPrince {
      */
     public void setDisallowPrint(boolean disallowPrint) {
         this.disallowPrint = disallowPrint;
+        configChanged();
     }
 
     /**
@@ -972,6 +1192,7 @@ abstract class AbstractPrince {
      */
     public void setDisallowCopy(boolean disallowCopy) {
         this.disallowCopy = disallowCopy;
+        configChanged();
     }
 
     /**
@@ -982,6 +1203,7 @@ abstract class AbstractPrince {
      */
     public void setAllowCopyForAccessibility(boolean allowCopyForAccessibility) {
         this.allowCopyForAccessibility = allowCopyForAccessibility;
+        configChanged();
     }
 
     /**
@@ -990,6 +1212,7 @@ abstract class AbstractPrince {
      */
     public void setDisallowAnnotate(boolean disallowAnnotate) {
         this.disallowAnnotate = disallowAnnotate;
+        configChanged();
     }
 
     /**
@@ -998,6 +1221,7 @@ abstract class AbstractPrince {
      */
     public void setDisallowModify(boolean disallowModify) {
         this.disallowModify = disallowModify;
+        configChanged();
     }
 
     /**
@@ -1009,6 +1233,7 @@ abstract class AbstractPrince {
      */
     public void setAllowAssembly(boolean allowAssembly) {
         this.allowAssembly = allowAssembly;
+        configChanged();
     }
     //endregion
 
@@ -1019,6 +1244,7 @@ abstract class AbstractPrince {
      */
     public void setLicenseFile(String licenseFile) {
         this.licenseFile = licenseFile;
+        configChanged();
     }
 
     /**
@@ -1028,6 +1254,7 @@ abstract class AbstractPrince {
      */
     public void setLicenseKey(String licenseKey) {
         this.licenseKey = licenseKey;
+        configChanged();
     }
     //endregion
 
@@ -1039,6 +1266,7 @@ abstract class AbstractPrince {
      */
     public void setFailDroppedContent(boolean failDroppedContent) {
         this.failDroppedContent = failDroppedContent;
+        configChanged();
     }
 
     /**
@@ -1048,6 +1276,7 @@ abstract class AbstractPrince {
      */
     public void setFailMissingResources(boolean failMissingResources) {
         this.failMissingResources = failMissingResources;
+        configChanged();
     }
 
     /**
@@ -1058,6 +1287,7 @@ abstract class AbstractPrince {
      */
     public void setFailStrippedTransparency(boolean failStrippedTransparency) {
         this.failStrippedTransparency = failStrippedTransparency;
+        configChanged();
     }
 
     /**
@@ -1067,6 +1297,7 @@ abstract class AbstractPrince {
      */
     public void setFailMissingGlyphs(boolean failMissingGlyphs) {
         this.failMissingGlyphs = failMissingGlyphs;
+        configChanged();
     }
 
     /**
@@ -1077,6 +1308,7 @@ abstract class AbstractPrince {
      */
     public void setFailPdfProfileError(boolean failPdfProfileError) {
         this.failPdfProfileError = failPdfProfileError;
+        configChanged();
     }
 
     /**
@@ -1086,6 +1318,7 @@ abstract class AbstractPrince {
      */
     public void setFailPdfTagError(boolean failPdfTagError) {
         this.failPdfTagError = failPdfTagError;
+        configChanged();
     }
 
     /**
@@ -1095,6 +1328,7 @@ abstract class AbstractPrince {
      */
     public void setFailInvalidLicense(boolean failInvalidLicense) {
         this.failInvalidLicense = failInvalidLicense;
+        configChanged();
     }
     /**
      * Enables/disables all fail-safe options.
@@ -1108,6 +1342,7 @@ abstract class AbstractPrince {
         this.failPdfProfileError = failSafe;
         this.failPdfTagError = failSafe;
         this.failInvalidLicense = failSafe;
+        configChanged();
     }
     //endregion
 }
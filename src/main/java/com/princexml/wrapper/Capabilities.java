@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import com.princexml.wrapper.enums.JobFeature;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The job features supported by a Prince engine, resolved from the version
+ * it reports in the control handshake.
+ * <p>
+ * Capabilities are cached per executable path, so that the resolver is only
+ * called once for all the control processes started for the same Prince
+ * installation, such as those of a {@link PrinceControlPool}. The cache entry
+ * is replaced if the executable reports a different version, or another
+ * resolver is used.
+ */
+final class Capabilities {
+    private static final Map<String, Capabilities> CACHE = new ConcurrentHashMap<>();
+
+    private final String version;
+    private final Function<String, Set<JobFeature>> resolver;
+    private final Set<JobFeature> features;
+
+    private Capabilities(String version, Function<String, Set<JobFeature>> resolver) {
+        this.version = version;
+        this.resolver = resolver;
+        Set<JobFeature> features = resolver.apply(version);
+        this.features = Collections.unmodifiableSet(
+                features.isEmpty() ? EnumSet.noneOf(JobFeature.class) : EnumSet.copyOf(features));
+    }
+
+    /**
+     * Get the capabilities of the engine at {@code princePath}, which
+     * reported {@code version}.
+     */
+    static Capabilities of(String princePath, String version, Function<String, Set<JobFeature>> resolver) {
+        return CACHE.compute(princePath, (k, v) ->
+                v != null && v.version.equals(version) && v.resolver == resolver ? v : new Capabilities(version, resolver));
+    }
+
+    Set<JobFeature> getFeatures() {
+        return features;
+    }
+
+    /**
+     * Throw if a feature is used but not supported.
+     * @return Whether the feature is supported, and so may be sent.
+     */
+    boolean check(JobFeature feature, boolean used) {
+        boolean supported = features.contains(feature);
+        if (used && !supported) {
+            throw new RuntimeException(feature + " is not supported by Prince " + version);
+        }
+        return supported;
+    }
+}
@@ -1,40 +1,129 @@
 /*
- * Copyright (C) 2015-2016, 2021 YesLogic Pty. Ltd.
+ * Copyright (C) 2015-2016, 2021, 2026 YesLogic Pty. Ltd.
  * All rights reserved.
  */
 
 package com.princexml.wrapper;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Utility class used by the Prince control interface.
+ * <p>
+ * The data of a chunk is either held in memory or, if it is larger than the
+ * memory threshold it was read with, in a temporary file that is deleted
+ * when the chunk is closed.
  */
-final class Chunk {
+final class Chunk implements Closeable {
+    // Lengths of up to 18 digits always fit in a long.
+    private static final int MAX_NUM_LENGTH = 18;
+    // The largest array that can be allocated on common JVMs.
+    private static final long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    // A multiple of common page and file system block sizes.
+    private static final int SPILL_BUFFER_SIZE = 1 << 20;
+
     private final String tag;
+    private final long length;
     private final byte[] bytes;
+    private final Path file;
 
     Chunk(String tag, byte[] bytes) {
         this.tag = tag;
+        this.length = bytes.length;
         this.bytes = bytes;
+        this.file = null;
+    }
+
+    private Chunk(String tag, long length, Path file) {
+        this.tag = tag;
+        this.length = length;
+        this.bytes = null;
+        this.file = file;
     }
 
     String getTag() {
         return tag;
     }
 
-    byte[] getBytes() {
-        return bytes;
+    long getLength() {
+        return length;
+    }
+
+    /**
+     * Whether the chunk data was spilled to a temporary file.
+     */
+    boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * The temporary file holding the chunk data, or null if it is held in
+     * memory.
+     */
+    Path getPath() {
+        return file;
+    }
+
+    /**
+     * The chunk data. Spilled data is read back into memory, so this should
+     * only be used for chunks that are known to be small.
+     */
+    byte[] getBytes() throws IOException {
+        return bytes != null ? bytes : Files.readAllBytes(file);
+    }
+
+    String getString() throws IOException {
+        return new String(getBytes(), StandardCharsets.UTF_8);
+    }
+
+    InputStream newInputStream() throws IOException {
+        return bytes != null ? new ByteArrayInputStream(bytes) : Files.newInputStream(file);
     }
 
-    String getString() {
-        return new String(bytes, StandardCharsets.UTF_8);
+    void writeTo(OutputStream out) throws IOException {
+        if (bytes != null) {
+            out.write(bytes);
+        } else {
+            Files.copy(file, out);
+        }
+    }
+
+    /**
+     * Delete the temporary file, if any.
+     */
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
     }
 
     static Chunk readChunk(InputStream in) throws IOException {
+        return readChunk(in, MAX_ARRAY_LENGTH, null);
+    }
+
+    /**
+     * Read a chunk, spilling its data to a temporary file if it is longer
+     * than {@code memoryThreshold} bytes.
+     * @param spillDirectory The directory for temporary files, or null for
+     *                       the default temporary-file directory.
+     */
+    static Chunk readChunk(InputStream in, long memoryThreshold, Path spillDirectory) throws IOException {
+        String tag = readTag(in);
+        long length = readLength(in);
+        return readData(in, tag, length, memoryThreshold, spillDirectory);
+    }
+
+    /**
+     * Read the tag of a chunk and the space that follows it.
+     */
+    static String readTag(InputStream in) throws IOException {
         byte[] tagBytes = new byte[3];
         if (!readBytes(in, tagBytes)) {
             throw new IOException("failed to read chunk tag");
@@ -45,11 +134,46 @@ final class Chunk {
             throw new IOException("expected space after chunk tag");
         }
 
-        int length = 0;
-        int max_num_length = 9;
+        return tag;
+    }
+
+    /**
+     * Read the data of a chunk whose tag and length have already been read,
+     * and the newline that follows it.
+     */
+    static Chunk readData(InputStream in, String tag, long length, long memoryThreshold, Path spillDirectory)
+            throws IOException {
+        Chunk chunk;
+        if (length <= Math.min(memoryThreshold, MAX_ARRAY_LENGTH)) {
+            byte[] dataBytes = new byte[(int) length];
+            if (!readBytes(in, dataBytes)) {
+                throw new IOException("failed to read chunk data");
+            }
+            chunk = new Chunk(tag, dataBytes);
+        } else {
+            chunk = spill(in, tag, length, spillDirectory);
+        }
+
+        try {
+            if (in.read() != '\n') {
+                throw new IOException("expected newline after chunk data");
+            }
+        } catch (IOException e) {
+            chunk.close();
+            throw e;
+        }
+
+        return chunk;
+    }
+
+    /**
+     * Read the length of a chunk and the newline that follows it.
+     */
+    static long readLength(InputStream in) throws IOException {
+        long length = 0;
         int num_length = 0;
 
-        for (; num_length < max_num_length + 1; num_length++) {
+        for (; num_length < MAX_NUM_LENGTH + 1; num_length++) {
             int b = in.read();
 
             if (b == '\n') {
@@ -64,24 +188,49 @@ final class Chunk {
             length += b - '0';
         }
 
-        if (num_length < 1 || num_length > max_num_length) {
+        if (num_length < 1 || num_length > MAX_NUM_LENGTH) {
             throw new IOException("invalid chunk length");
         }
 
-        byte[] dataBytes = new byte[length];
-        if (!readBytes(in, dataBytes)) {
-            throw new IOException("failed to read chunk data");
-        }
+        return length;
+    }
+
+    private static Chunk spill(InputStream in, String tag, long length, Path spillDirectory) throws IOException {
+        Path file = spillDirectory != null
+                ? Files.createTempFile(spillDirectory, "prince-", ".chunk")
+                : Files.createTempFile("prince-", ".chunk");
 
-        if (in.read() != '\n') {
-            throw new IOException("expected newline after chunk data");
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // Fill the whole buffer before each write, so that writes are
+            // large and aligned to the buffer size within the file.
+            byte[] buffer = new byte[SPILL_BUFFER_SIZE];
+            long remaining = length;
+
+            while (remaining > 0) {
+                int n = (int) Math.min(buffer.length, remaining);
+                if (!readBytes(in, buffer, n)) {
+                    throw new IOException("failed to read chunk data");
+                }
+
+                ByteBuffer bb = ByteBuffer.wrap(buffer, 0, n);
+                while (bb.hasRemaining()) {
+                    out.write(bb);
+                }
+                remaining -= n;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
         }
 
-        return new Chunk(tag, dataBytes);
+        return new Chunk(tag, length, file);
     }
 
     static boolean readBytes(InputStream in, byte[] buf) throws IOException {
-        int length = buf.length;
+        return readBytes(in, buf, buf.length);
+    }
+
+    private static boolean readBytes(InputStream in, byte[] buf, int length) throws IOException {
         int offset = 0;
 
         while (length > 0) {
@@ -107,10 +256,39 @@ final class Chunk {
     }
 
     static void writeChunk(OutputStream out, String tag, byte[] data) throws IOException {
-        String s = tag + " " + data.length + "\n";
-
-        out.write(s.getBytes(StandardCharsets.UTF_8));
+        writeHeader(out, tag, data.length);
         out.write(data);
         out.write('\n');
     }
+
+    static void writeChunk(OutputStream out, String tag, Json data) throws IOException {
+        writeHeader(out, tag, data.length());
+        data.writeTo(out);
+        out.write('\n');
+    }
+
+    static void writeHeader(OutputStream out, String tag, long length) throws IOException {
+        // Tag, space, up to 19 digits and a newline.
+        byte[] header = new byte[tag.length() + 21];
+        int p = 0;
+
+        for (int i = 0; i < tag.length(); i++) {
+            header[p++] = (byte) tag.charAt(i);
+        }
+        header[p++] = ' ';
+
+        int start = p;
+        do {
+            header[p++] = (byte) ('0' + length % 10);
+            length /= 10;
+        } while (length != 0);
+        for (int i = start, j = p - 1; i < j; i++, j--) {
+            byte t = header[i];
+            header[i] = header[j];
+            header[j] = t;
+        }
+        header[p++] = '\n';
+
+        out.write(header, 0, p);
+    }
 }
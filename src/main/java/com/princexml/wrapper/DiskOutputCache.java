@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of conversion outputs in a directory, which can be shared by any
+ * number of processes, including processes on different hosts using a
+ * shared file system. It is used as the second tier of an
+ * {@link OutputCache}, see {@link OutputCache#OutputCache(long, DiskOutputCache)}.
+ * <p>
+ * Each output is stored in a file named after its key, in a subdirectory
+ * named after the first two characters of the key. Outputs are written to a
+ * temporary file and renamed into place, so readers never see a partial
+ * output. Processes producing the same output take a lock on a file next to
+ * it, so that all but the first find the output already there. If the file
+ * system does not support locks, the worst case is duplicate conversions.
+ * <p>
+ * A background thread evicts outputs that are older than the maximum age,
+ * and then the least recently used outputs until the total size is below
+ * the maximum. Every process sharing the directory may evict. Errors reading
+ * or writing the cache are treated as misses rather than failing the
+ * conversion.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class DiskOutputCache implements Closeable {
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long EVICTION_INTERVAL = 60;
+    // Temporary and lock files older than this were left by a crashed process.
+    private static final long STALE_AGE = TimeUnit.HOURS.toMillis(1);
+
+    private final Path directory;
+    private final long maxSize;
+    private volatile long maxAge;
+    private final ScheduledExecutorService evictor;
+
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Constructor for {@code DiskOutputCache}. The directory is created if
+     * it does not exist, and eviction starts in the background.
+     * @param directory The directory to store the outputs in.
+     * @param maxSize The maximum total size of the cached outputs in bytes.
+     *                Value must be greater than 0.
+     * @throws IOException If the directory cannot be created.
+     */
+    public DiskOutputCache(Path directory, long maxSize) throws IOException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("invalid maxSize value (must be > 0)");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxSize = maxSize;
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "prince-disk-cache-eviction");
+            t.setDaemon(true);
+            return t;
+        });
+        evictor.scheduleWithFixedDelay(this::evictQuietly, 0, EVICTION_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Set the maximum age of cached outputs, measured from when they were
+     * last used. Default value is {@code 0} (no limit).
+     * @param maxAge The maximum age in seconds. Value must not be negative.
+     */
+    public void setMaxAge(long maxAge) {
+        if (maxAge < 0) {
+            throw new IllegalArgumentException("invalid maxAge value (must be >= 0)");
+        }
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * The number of outputs read from the cache by this process.
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * The number of conversions this process had to run.
+     * @return The miss count.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * The number of outputs evicted by this process.
+     * @return The eviction count.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * The total size of the cached outputs in bytes, as of the last eviction
+     * plus anything this process has added since.
+     * @return The size.
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * Evict expired outputs, and then the least recently used outputs until
+     * the total size is within the maximum. This runs periodically in the
+     * background, so it only needs to be called to evict immediately.
+     * @throws IOException If an I/O error occurs.
+     */
+    public synchronized void evict() throws IOException {
+        long now = System.currentTimeMillis();
+        long expiry = maxAge > 0 ? now - TimeUnit.SECONDS.toMillis(maxAge) : Long.MIN_VALUE;
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(directory)) {
+            for (Path dir : dirs) {
+                if (!Files.isDirectory(dir)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                    for (Path file : files) {
+                        BasicFileAttributes attrs;
+                        try {
+                            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                        } catch (NoSuchFileException e) {
+                            continue;
+                        }
+                        String name = file.getFileName().toString();
+                        long modified = attrs.lastModifiedTime().toMillis();
+
+                        if (name.endsWith(ENTRY_SUFFIX)) {
+                            if (modified < expiry) {
+                                delete(file);
+                            } else {
+                                entries.add(new Entry(file, attrs.size(), modified));
+                                total += attrs.size();
+                            }
+                        } else if (modified < now - STALE_AGE) {
+                            deleteStale(file, name);
+                        }
+                    }
+                } catch (NoSuchFileException e) {
+                    // Removed by another process.
+                }
+            }
+        }
+
+        entries.sort(Comparator.comparingLong(e -> e.modified));
+        for (int i = 0; total > maxSize && i < entries.size(); i++) {
+            Entry e = entries.get(i);
+            delete(e.path);
+            total -= e.size;
+        }
+
+        size.set(total);
+    }
+
+    /**
+     * Stop background eviction. The cached outputs are left in place.
+     */
+    @Override
+    public void close() {
+        evictor.shutdownNow();
+    }
+
+    /**
+     * Get the result for {@code key} from the cache, or run
+     * {@code conversion} and store its result if it was successful.
+     */
+    OutputCache.Result get(String key, OutputCache.Conversion conversion) throws IOException {
+        Path entry = directory.resolve(key.substring(0, 2)).resolve(key + ENTRY_SUFFIX);
+
+        OutputCache.Result result = read(entry);
+        if (result != null) {
+            hitCount.incrementAndGet();
+            return result;
+        }
+
+        Files.createDirectories(entry.getParent());
+        Path lockFile = entry.resolveSibling(key + LOCK_SUFFIX);
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = lock(channel)) {
+            // Another process may have produced the output while this one
+            // was waiting for the lock.
+            result = read(entry);
+            if (result != null) {
+                hitCount.incrementAndGet();
+                return result;
+            }
+
+            missCount.incrementAndGet();
+            result = conversion.convert();
+            if (result.success) {
+                publish(entry, result);
+            }
+            return result;
+        }
+    }
+
+    private OutputCache.Result read(Path entry) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(entry))) {
+            Chunk log = Chunk.readChunk(in);
+            Chunk pdf = Chunk.readChunk(in);
+            if (!log.getTag().equals("log") || !pdf.getTag().equals("pdf")) {
+                throw new IOException("invalid cache entry");
+            }
+
+            try {
+                // Approximates least recently used order for eviction.
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException ignored) {
+            }
+            return new OutputCache.Result(pdf.getBytes(), log.getBytes());
+        } catch (IOException e) {
+            // Missing, or corrupt and replaced by the next producer.
+            return null;
+        }
+    }
+
+    private void publish(Path entry, OutputCache.Result result) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), TEMP_SUFFIX);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                Chunk.writeChunk(out, "log", result.log);
+                Chunk.writeChunk(out, "pdf", result.pdf);
+            }
+            Util.moveAtomically(temp, entry);
+            temp = null;
+
+            if (size.addAndGet(Files.size(entry)) > maxSize) {
+                evictor.execute(this::evictQuietly);
+            }
+        } catch (IOException | RuntimeException e) {
+            // The output is still returned, just not cached.
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static FileLock lock(FileChannel channel) throws IOException {
+        try {
+            return channel.lock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another thread of this process, which is possible when
+            // several OutputCache instances share this cache.
+            return null;
+        }
+    }
+
+    private void delete(Path file) throws IOException {
+        if (Files.deleteIfExists(file)) {
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private static void deleteStale(Path file, String name) throws IOException {
+        if (name.endsWith(LOCK_SUFFIX)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+                 FileLock lock = channel.tryLock()) {
+                if (lock == null) {
+                    return;
+                }
+            } catch (NoSuchFileException | OverlappingFileLockException e) {
+                return;
+            }
+        } else if (!name.endsWith(TEMP_SUFFIX)) {
+            return;
+        }
+        Files.deleteIfExists(file);
+    }
+
+    private void evictQuietly() {
+        try {
+            evict();
+        } catch (IOException | UncheckedIOException e) {
+            // Retried at the next interval.
+        }
+    }
+
+    private static final class Entry {
+        final Path path;
+        final long size;
+        final long modified;
+
+        Entry(Path path, long size, long modified) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+}
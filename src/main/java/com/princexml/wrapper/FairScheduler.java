@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import com.princexml.wrapper.enums.Priority;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shares a fixed number of concurrent conversions between tenants, so that
+ * one tenant submitting a large batch cannot starve the others.
+ * <p>
+ * Tasks run in {@link Priority priority} order, so interactive conversions
+ * are started before any batch conversion that is waiting. Within a priority,
+ * tenants are served by weighted fair queuing: each tenant receives a share
+ * of the conversions started that is proportional to its weight, whatever
+ * the number of tasks it has queued. Each priority keeps its own shares, so
+ * a tenant with a batch backlog is not penalised for its interactive tasks.
+ * A tenant can also be limited to a number of concurrent conversions, even
+ * when there is spare capacity.
+ * <p>
+ * The scheduler only decides when tasks run, so it can be put in front of
+ * anything, such as a {@link PrinceControlPool} with a maximum size equal to
+ * the concurrency of the scheduler, e.g.
+ * <pre>
+ * boolean success = scheduler.execute("tenant-a", Priority.INTERACTIVE,
+ *         () -&gt; pool.execute(control -&gt; control.convert("doc.html", output)));
+ * </pre>
+ * <p>
+ * This class is thread-safe.
+ */
+public final class FairScheduler {
+    /**
+     * A task to be scheduled.
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    public interface Task<T> {
+        /**
+         * Run the task.
+         * @return The result of the task.
+         * @throws IOException If an I/O error occurs.
+         */
+        T run() throws IOException;
+    }
+
+    private final int concurrency;
+    private int defaultTenantLimit;
+    private final Map<String, Integer> weights = new HashMap<>();
+    private final Map<String, Integer> limits = new HashMap<>();
+    // Only tenants with running or waiting tasks.
+    private final Map<String, Tenant> tenants = new HashMap<>();
+    private int runningCount;
+    private int waitingCount;
+    private final double[] virtualTime = new double[Priority.values().length];
+
+    /**
+     * Constructor for {@code FairScheduler}.
+     * @param concurrency The maximum number of tasks running at once. Value
+     *                    must be greater than 0.
+     */
+    public FairScheduler(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("invalid concurrency value (must be > 0)");
+        }
+        this.concurrency = concurrency;
+        this.defaultTenantLimit = concurrency;
+    }
+
+    /**
+     * Set the weight of a tenant. Default value is {@code 1}.
+     * @param tenant The tenant key.
+     * @param weight The weight. Value must be greater than 0.
+     */
+    public synchronized void setWeight(String tenant, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("invalid weight value (must be > 0)");
+        }
+        weights.put(tenant, weight);
+        Tenant t = tenants.get(tenant);
+        if (t != null) {
+            t.weight = weight;
+        }
+    }
+
+    /**
+     * Set the maximum number of concurrent tasks of a tenant. Default value
+     * is the default tenant limit.
+     * @param tenant The tenant key.
+     * @param limit The limit. Value must be greater than 0.
+     */
+    public synchronized void setTenantLimit(String tenant, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("invalid limit value (must be > 0)");
+        }
+        limits.put(tenant, limit);
+        Tenant t = tenants.get(tenant);
+        if (t != null) {
+            t.limit = limit;
+        }
+        dispatch();
+    }
+
+    /**
+     * Set the maximum number of concurrent tasks of tenants without a limit
+     * of their own. Default value is the concurrency of the scheduler.
+     * @param limit The limit. Value must be greater than 0.
+     */
+    public synchronized void setDefaultTenantLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("invalid limit value (must be > 0)");
+        }
+        defaultTenantLimit = limit;
+        for (Map.Entry<String, Tenant> e : tenants.entrySet()) {
+            e.getValue().limit = limits.getOrDefault(e.getKey(), limit);
+        }
+        dispatch();
+    }
+
+    /**
+     * The number of running tasks.
+     * @return The running count.
+     */
+    public synchronized int getRunningCount() {
+        return runningCount;
+    }
+
+    /**
+     * The number of tasks waiting to run.
+     * @return The waiting count.
+     */
+    public synchronized int getWaitingCount() {
+        return waitingCount;
+    }
+
+    /**
+     * The number of running tasks of a tenant.
+     * @param tenant The tenant key.
+     * @return The running count.
+     */
+    public synchronized int getRunningCount(String tenant) {
+        Tenant t = tenants.get(tenant);
+        return t != null ? t.running : 0;
+    }
+
+    /**
+     * Run a task once it is its turn, waiting until then.
+     * @param tenant The tenant key.
+     * @param priority The priority class of the task.
+     * @param task The task.
+     * @param <T> The type of the result.
+     * @return The result of the task.
+     * @throws IOException If the task throws.
+     */
+    public <T> T execute(String tenant, Priority priority, Task<T> task) throws IOException {
+        Ticket ticket = enter(tenant, priority);
+        try {
+            return task.run();
+        } finally {
+            leave(ticket);
+        }
+    }
+
+    private synchronized Ticket enter(String key, Priority priority) throws InterruptedIOException {
+        Tenant tenant = tenants.get(key);
+        if (tenant == null) {
+            tenant = new Tenant(key, weights.getOrDefault(key, 1), limits.getOrDefault(key, defaultTenantLimit));
+            tenants.put(key, tenant);
+        }
+
+        // Each task costs one unit of the tenant's share, so its finish tag
+        // advances by the inverse of the weight.
+        int p = priority.ordinal();
+        double start = Math.max(virtualTime[p], tenant.lastFinish[p]);
+        Ticket ticket = new Ticket(tenant, priority, start, start + 1.0 / tenant.weight);
+        tenant.lastFinish[p] = ticket.finish;
+        tenant.queues[p].add(ticket);
+        waitingCount++;
+        dispatch();
+
+        try {
+            while (!ticket.granted) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!ticket.granted) {
+                tenant.queues[priority.ordinal()].remove(ticket);
+                waitingCount--;
+                removeIfIdle(tenant);
+                throw new InterruptedIOException("interrupted while waiting to be scheduled");
+            }
+        }
+        return ticket;
+    }
+
+    private synchronized void leave(Ticket ticket) {
+        runningCount--;
+        ticket.tenant.running--;
+        removeIfIdle(ticket.tenant);
+        dispatch();
+    }
+
+    /**
+     * Start waiting tasks while there is capacity, highest priority first,
+     * and then earliest finish tag among tenants under their limit.
+     */
+    private void dispatch() {
+        boolean granted = false;
+        while (runningCount < concurrency) {
+            Ticket next = null;
+            for (int p = 0; p < Priority.values().length && next == null; p++) {
+                for (Tenant tenant : tenants.values()) {
+                    Ticket head = tenant.queues[p].peek();
+                    if (head != null && tenant.running < tenant.limit
+                            && (next == null || head.finish < next.finish)) {
+                        next = head;
+                    }
+                }
+            }
+            if (next == null) {
+                break;
+            }
+
+            next.tenant.queues[next.priority.ordinal()].poll();
+            next.granted = true;
+            next.tenant.running++;
+            runningCount++;
+            waitingCount--;
+            int p = next.priority.ordinal();
+            virtualTime[p] = Math.max(virtualTime[p], next.start);
+            granted = true;
+        }
+        if (granted) {
+            notifyAll();
+        }
+    }
+
+    private void removeIfIdle(Tenant tenant) {
+        if (tenant.running == 0) {
+            for (ArrayDeque<Ticket> queue : tenant.queues) {
+                if (!queue.isEmpty()) {
+                    return;
+                }
+            }
+            tenants.remove(tenant.key);
+        }
+    }
+
+    private static final class Tenant {
+        final String key;
+        int weight;
+        int limit;
+        int running;
+        final double[] lastFinish = new double[Priority.values().length];
+        @SuppressWarnings("unchecked")
+        final ArrayDeque<Ticket>[] queues = new ArrayDeque[Priority.values().length];
+
+        Tenant(String key, int weight, int limit) {
+            this.key = key;
+            this.weight = weight;
+            this.limit = limit;
+            for (int i = 0; i < queues.length; i++) {
+                queues[i] = new ArrayDeque<>();
+            }
+        }
+    }
+
+    private static final class Ticket {
+        final Tenant tenant;
+        final Priority priority;
+        final double start;
+        final double finish;
+        boolean granted;
+
+        Ticket(Tenant tenant, Priority priority, double start, double finish) {
+            this.tenant = tenant;
+            this.priority = priority;
+            this.start = start;
+            this.finish = finish;
+        }
+    }
+}
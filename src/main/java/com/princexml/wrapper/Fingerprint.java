@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 fingerprint of everything that determines the output of a
+ * conversion. Every value is prefixed with its length, so that different
+ * sequences of values cannot produce the same digest.
+ */
+final class Fingerprint {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest digest;
+    private final byte[] buffer = new byte[8192];
+
+    Fingerprint() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new RuntimeException(e);
+        }
+    }
+
+    Fingerprint add(String value) {
+        return add(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    Fingerprint add(byte[] value) {
+        return add(value, 0, value.length);
+    }
+
+    Fingerprint add(byte[] value, int offset, int length) {
+        addLength(length);
+        digest.update(value, offset, length);
+        return this;
+    }
+
+    /**
+     * Add the content of a stream, which must be exactly {@code length} bytes
+     * long.
+     */
+    Fingerprint add(InputStream in, long length) throws IOException {
+        addLength(length);
+
+        long total = 0;
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            digest.update(buffer, 0, n);
+            total += n;
+        }
+        if (total != length) {
+            throw new IOException("resource length " + total + " does not match its declared length of " + length);
+        }
+        return this;
+    }
+
+    Fingerprint addFile(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return add(in, Files.size(file));
+        }
+    }
+
+    /**
+     * Add a reference to a document or resource. Local files, given as paths
+     * or {@code file:} URLs, are identified by their content, and anything
+     * else, such as remote URLs, by name only. Files that the referenced file
+     * refers to in turn are not read.
+     */
+    Fingerprint addReference(String reference) throws IOException {
+        add(reference);
+
+        Path file = toLocalFile(reference);
+        if (file != null) {
+            addFile(file);
+        } else {
+            addLength(-1);
+        }
+        return this;
+    }
+
+    /**
+     * The digest as a hex string. The fingerprint cannot be used afterwards.
+     */
+    String finish() {
+        byte[] bytes = digest.digest();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private void addLength(long length) {
+        for (int i = 56; i >= 0; i -= 8) {
+            digest.update((byte) (length >>> i));
+        }
+    }
+
+    private static Path toLocalFile(String reference) {
+        try {
+            Path path;
+            if (reference.regionMatches(true, 0, "file:", 0, 5)) {
+                path = Paths.get(URI.create(reference));
+            } else if (reference.indexOf(':') > 1) {
+                // A URL, rather than a path or a Windows drive letter.
+                return null;
+            } else {
+                path = Paths.get(reference);
+            }
+            return Files.isRegularFile(path) ? path : null;
+        } catch (IllegalArgumentException e) {
+            // An invalid path, or a file: URL with a host or a query.
+            return null;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.IOException;
+
+/**
+ * A consumer that may throw an {@link IOException}, such as a template
+ * rendering a document into a {@link java.io.Writer}.
+ * @param <T> The type of the value consumed.
+ */
+@FunctionalInterface
+public interface IOConsumer<T> {
+    /**
+     * Consume a value.
+     * @param t The value.
+     * @throws IOException If an I/O error occurs.
+     */
+    void accept(T t) throws IOException;
+}
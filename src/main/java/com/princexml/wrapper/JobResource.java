@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+
+/**
+ * A job resource sent to the control process as a {@code dat} chunk.
+ */
+abstract class JobResource {
+    static JobResource of(byte[] bytes) {
+        return new Bytes(bytes, bytes.length);
+    }
+
+    /**
+     * A resource holding the first {@code length} bytes of an array.
+     */
+    static JobResource of(byte[] bytes, int length) {
+        return new Bytes(bytes, length);
+    }
+
+    static JobResource of(Path path) {
+        return new File(path);
+    }
+
+    /**
+     * A temporary file, which is deleted when the resource is released.
+     */
+    static JobResource temporary(Path path) {
+        return new TemporaryFile(path);
+    }
+
+    static JobResource of(Supplier<InputStream> supplier, long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("invalid length value (must be >= 0)");
+        }
+        return new Stream(supplier, length);
+    }
+
+    /**
+     * The length of the resource in bytes, as far as it is known before the
+     * resource is sent.
+     */
+    abstract long length() throws IOException;
+
+    /**
+     * Write the resource as a chunk with the given tag.
+     */
+    abstract void writeChunk(OutputStream out, String tag) throws IOException;
+
+    /**
+     * Add the content of the resource to a fingerprint.
+     */
+    abstract void fingerprint(Fingerprint fingerprint) throws IOException;
+
+    /**
+     * Read the content of the resource, without a chunk header.
+     */
+    abstract InputStream newInputStream() throws IOException;
+
+    /**
+     * The number of bytes of the resource held in the heap.
+     */
+    long heapSize() {
+        return 0;
+    }
+
+    /**
+     * Release anything held by the resource, once it is no longer needed.
+     */
+    void release() {}
+
+    private static final class Bytes extends JobResource {
+        private final byte[] bytes;
+        private final int length;
+
+        Bytes(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+        }
+
+        @Override
+        long length() {
+            return length;
+        }
+
+        @Override
+        long heapSize() {
+            return bytes.length;
+        }
+
+        @Override
+        void writeChunk(OutputStream out, String tag) throws IOException {
+            Chunk.writeHeader(out, tag, length);
+            out.write(bytes, 0, length);
+            out.write('\n');
+        }
+
+        @Override
+        void fingerprint(Fingerprint fingerprint) {
+            fingerprint.add(bytes, 0, length);
+        }
+
+        @Override
+        InputStream newInputStream() {
+            return new ByteArrayInputStream(bytes, 0, length);
+        }
+    }
+
+    /**
+     * A file that is only read when it is sent, and never held in the heap.
+     */
+    private static class File extends JobResource {
+        final Path path;
+
+        File(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        long length() throws IOException {
+            return Files.size(path);
+        }
+
+        @Override
+        void writeChunk(OutputStream out, String tag) throws IOException {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                // The length is fixed when the header is written, in case the
+                // file is modified while it is being sent.
+                long length = ch.size();
+                Chunk.writeHeader(out, tag, length);
+
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = 0;
+                while (position < length) {
+                    long count = ch.transferTo(position, length - position, target);
+                    if (count <= 0) {
+                        throw new IOException("file truncated while sending: " + path);
+                    }
+                    position += count;
+                }
+
+                out.write('\n');
+            }
+        }
+
+        @Override
+        void fingerprint(Fingerprint fingerprint) throws IOException {
+            fingerprint.addFile(path);
+        }
+
+        @Override
+        InputStream newInputStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+    }
+
+    private static final class TemporaryFile extends File {
+        TemporaryFile(Path path) {
+            super(path);
+        }
+
+        @Override
+        void release() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+                // Left for the operating system to clean up.
+            }
+        }
+    }
+
+    /**
+     * A stream of a declared length that is only opened when it is sent.
+     */
+    private static final class Stream extends JobResource {
+        private final Supplier<InputStream> supplier;
+        private final long length;
+
+        Stream(Supplier<InputStream> supplier, long length) {
+            this.supplier = supplier;
+            this.length = length;
+        }
+
+        @Override
+        long length() {
+            return length;
+        }
+
+        @Override
+        void writeChunk(OutputStream out, String tag) throws IOException {
+            try (InputStream in = open()) {
+                Chunk.writeHeader(out, tag, length);
+
+                byte[] buffer = new byte[(int) Math.min(length, Util.BUFFER_SIZE)];
+                long remaining = length;
+                while (remaining > 0) {
+                    int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (n < 0) {
+                        throw new IOException("resource is shorter than its declared length of " + length);
+                    }
+                    out.write(buffer, 0, n);
+                    remaining -= n;
+                }
+                if (in.read() >= 0) {
+                    throw new IOException("resource is longer than its declared length of " + length);
+                }
+
+                out.write('\n');
+            }
+        }
+
+        @Override
+        void fingerprint(Fingerprint fingerprint) throws IOException {
+            try (InputStream in = open()) {
+                fingerprint.add(in, length);
+            }
+        }
+
+        @Override
+        InputStream newInputStream() throws IOException {
+            return open();
+        }
+
+        private InputStream open() throws IOException {
+            try {
+                InputStream in = supplier.get();
+                if (in == null) {
+                    throw new IOException("resource supplier returned null");
+                }
+                return in;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
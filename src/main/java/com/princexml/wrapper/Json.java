@@ -1,15 +1,29 @@
 /*
- * Copyright (C) 2015, 2021 YesLogic Pty. Ltd.
+ * Copyright (C) 2015, 2021, 2026 YesLogic Pty. Ltd.
  * All rights reserved.
  */
 
 package com.princexml.wrapper;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
- * JSON utility class.
+ * JSON utility class. The JSON is encoded as UTF-8 directly into a byte
+ * buffer, which can be reused for subsequent documents by calling
+ * {@link #reset()}.
  */
 final class Json {
-    private final StringBuilder builder = new StringBuilder();
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] HEX = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    private byte[] buf = new byte[1024];
+    private int len;
     private boolean comma;
 
     Json beginObj() {
@@ -19,39 +33,39 @@ final class Json {
     Json beginObj(String name) {
         maybeAppendComma();
         if (name != null) {
-            builder.append(quoteAndEscape(name));
-            builder.append(':');
+            appendString(name);
+            append(':');
         }
-        builder.append('{');
+        append('{');
         comma = false;
         return this;
     }
 
     Json endObj() {
-        builder.append('}');
+        append('}');
         comma = true;
         return this;
     }
 
     Json beginList(String name) {
         maybeAppendComma();
-        builder.append(quoteAndEscape(name));
-        builder.append(':');
-        builder.append('[');
+        appendString(name);
+        append(':');
+        append('[');
         comma = false;
         return this;
     }
 
     Json endList() {
-        builder.append(']');
+        append(']');
         comma = true;
         return this;
     }
 
     Json field(String name) {
         maybeAppendComma();
-        builder.append(quoteAndEscape(name));
-        builder.append(':');
+        appendString(name);
+        append(':');
         comma = false;
         return this;
     }
@@ -69,37 +83,172 @@ final class Json {
     }
 
     Json value(String value) {
-        return valueInternal(quoteAndEscape(value));
+        maybeAppendComma();
+        appendString(value);
+        comma = true;
+        return this;
     }
 
     Json value(int value) {
-        return valueInternal(value);
+        maybeAppendComma();
+        appendInt(value);
+        comma = true;
+        return this;
     }
 
     Json value(boolean value) {
-        return valueInternal(value);
-    }
-
-    private <T> Json valueInternal(T value) {
         maybeAppendComma();
-        builder.append(value);
+        append(value ? TRUE : FALSE, 0, value ? TRUE.length : FALSE.length);
         comma = true;
         return this;
     }
 
-    @Override
-    public String toString() {
-        return builder.toString();
+    /**
+     * Append already encoded JSON verbatim. The next value or field is not
+     * preceded by a comma, so the bytes should end just after an opening
+     * bracket or a field name.
+     */
+    Json raw(byte[] bytes, int offset, int length) {
+        append(bytes, offset, length);
+        comma = false;
+        return this;
+    }
+
+    /**
+     * Discard the contents, keeping the buffer for the next document.
+     */
+    Json reset() {
+        len = 0;
+        comma = false;
+        return this;
     }
 
-    private String quoteAndEscape(String s) {
-        String escaped = s.replace("\\", "\\\\").replace("\"", "\\\"");
-        return '"' + escaped + '"';
+    /**
+     * The length of the encoded JSON in bytes.
+     */
+    int length() {
+        return len;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, len);
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, len);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, len, StandardCharsets.UTF_8);
     }
 
     private void maybeAppendComma() {
         if (comma) {
-            builder.append(',');
+            append(',');
+        }
+    }
+
+    /**
+     * Quote, escape and UTF-8 encode a string in a single pass.
+     */
+    private void appendString(String s) {
+        int n = s.length();
+        // Worst case is six bytes per char, for escaped control characters.
+        ensureCapacity(n * 6 + 2);
+
+        byte[] b = buf;
+        int p = len;
+        b[p++] = '"';
+
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    b[p++] = (byte) c;
+                    continue;
+                }
+
+                b[p++] = '\\';
+                switch (c) {
+                    case '"': b[p++] = '"'; break;
+                    case '\\': b[p++] = '\\'; break;
+                    case '\b': b[p++] = 'b'; break;
+                    case '\f': b[p++] = 'f'; break;
+                    case '\n': b[p++] = 'n'; break;
+                    case '\r': b[p++] = 'r'; break;
+                    case '\t': b[p++] = 't'; break;
+                    default:
+                        b[p++] = 'u';
+                        b[p++] = '0';
+                        b[p++] = '0';
+                        b[p++] = HEX[c >> 4];
+                        b[p++] = HEX[c & 0xf];
+                        break;
+                }
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xc0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    b[p++] = (byte) (0xf0 | (cp >> 18));
+                    b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    b[p++] = (byte) (0x80 | (cp & 0x3f));
+                } else {
+                    // Unpaired surrogate, replaced as String.getBytes() would.
+                    b[p++] = '?';
+                }
+            } else {
+                b[p++] = (byte) (0xe0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                b[p++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+
+        b[p++] = '"';
+        len = p;
+    }
+
+    private void appendInt(int value) {
+        // Long arithmetic so that Integer.MIN_VALUE can be negated.
+        long v = value;
+        ensureCapacity(11);
+
+        if (v < 0) {
+            buf[len++] = '-';
+            v = -v;
+        }
+
+        int start = len;
+        do {
+            buf[len++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+
+        for (int i = start, j = len - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+    }
+
+    private void append(char c) {
+        ensureCapacity(1);
+        buf[len++] = (byte) c;
+    }
+
+    private void append(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buf, len, length);
+        len += length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (len + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
         }
     }
 }
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A limit on the heap memory used to buffer documents, resources and output,
+ * shared by any number of {@link Prince} and {@link PrinceControl} instances
+ * with {@link Prince#setMemoryBudget(MemoryBudget)}.
+ * <p>
+ * Each conversion reserves an estimate of its footprint, from the sizes of
+ * its in-memory inputs and resources, before it starts. If the budget cannot
+ * cover the estimate, the conversion waits for other conversions to release
+ * their reservations, up to the maximum wait, and is then rejected with an
+ * {@code IOException}. Buffers whose size is only known later, such as
+ * streamed inputs and PDF chunks, are reserved as they are read, and spilled
+ * to temporary files when the budget is exhausted rather than waiting.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class MemoryBudget {
+    private final long maxSize;
+    private volatile long maxWait = 30000;
+    private long used;
+    private int waitingCount;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Constructor for {@code MemoryBudget}.
+     * @param maxSize The budget in bytes. Value must be greater than 0.
+     */
+    public MemoryBudget(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("invalid maxSize value (must be > 0)");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Set how long a conversion may wait for its reservation before it is
+     * rejected. Default value is {@code 30000}.
+     * @param maxWait The maximum wait in milliseconds, or {@code 0} to reject
+     *                conversions immediately. Value must not be negative.
+     */
+    public void setMaxWait(long maxWait) {
+        if (maxWait < 0) {
+            throw new IllegalArgumentException("invalid maxWait value (must be >= 0)");
+        }
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * The number of bytes reserved.
+     * @return The used size.
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * The number of conversions waiting for a reservation.
+     * @return The waiting count.
+     */
+    public synchronized int getWaitingCount() {
+        return waitingCount;
+    }
+
+    /**
+     * The number of conversions rejected because their reservation could
+     * not be made in time.
+     * @return The rejected count.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Reserve {@code size} bytes, waiting up to the maximum wait.
+     * @throws IOException If the reservation cannot be made in time, or is
+     *                     larger than the whole budget.
+     */
+    synchronized Reservation reserve(long size) throws IOException {
+        if (size > maxSize) {
+            rejectedCount.incrementAndGet();
+            throw new IOException("conversion needs " + size + " bytes, more than the memory budget of " + maxSize);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWait);
+        waitingCount++;
+        try {
+            while (used + size > maxSize) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    rejectedCount.incrementAndGet();
+                    throw new IOException("memory budget exhausted: " + used + " of " + maxSize
+                            + " bytes reserved, " + size + " more needed");
+                }
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for memory budget");
+        } finally {
+            waitingCount--;
+        }
+
+        used += size;
+        return new Reservation(size);
+    }
+
+    /**
+     * Reserve {@code size} bytes if the budget allows it, without waiting.
+     * @return The reservation, or null if there is no room.
+     */
+    synchronized Reservation tryReserve(long size) {
+        return tryAdd(size) ? new Reservation(size) : null;
+    }
+
+    private synchronized boolean tryAdd(long size) {
+        if (used + size > maxSize) {
+            return false;
+        }
+        used += size;
+        return true;
+    }
+
+    private synchronized void add(long size) {
+        used += size;
+    }
+
+    private synchronized void release(long size) {
+        used -= size;
+        notifyAll();
+    }
+
+    /**
+     * Memory reserved by one conversion, released when it is closed.
+     */
+    final class Reservation implements AutoCloseable {
+        private long size;
+
+        private Reservation(long size) {
+            this.size = size;
+        }
+
+        /**
+         * Reserve {@code more} bytes if the budget allows it, without
+         * waiting.
+         * @return false if the caller should spill to disk instead.
+         */
+        boolean tryGrow(long more) {
+            if (more <= 0 || tryAdd(more)) {
+                size += Math.max(more, 0);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Account for {@code more} bytes that have to be held in memory
+         * regardless of the budget, so that other conversions wait for them.
+         */
+        void grow(long more) {
+            add(more);
+            size += more;
+        }
+
+        /**
+         * Give back {@code less} bytes that are no longer held, such as a
+         * buffer that has been spilled to disk.
+         */
+        void shrink(long less) {
+            less = Math.min(Math.max(less, 0), size);
+            release(less);
+            size -= less;
+        }
+
+        @Override
+        public void close() {
+            release(size);
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory cache of conversion outputs, which can be shared by any
+ * number of {@link Prince} and {@link PrinceControl} instances with
+ * {@link Prince#setOutputCache(OutputCache)}.
+ * <p>
+ * Outputs are keyed by a fingerprint of the Prince executable, the effective
+ * options and the content of the inputs and local resources, so repeated
+ * conversions of identical documents skip Prince entirely. The messages of
+ * the original conversion are replayed to the events handler on every hit.
+ * <p>
+ * Only the files given to the wrapper directly are read for the key: input
+ * documents, style sheets, scripts and other resources set as options,
+ * whether as paths or {@code file:} URLs. Files that a document refers to
+ * itself, such as images, linked style sheets and {@code @import} rules,
+ * are not parsed out of it, and remote resources are identified by URL
+ * only. A cached output does not reflect later changes to any of these, so
+ * only cache documents whose dependencies do not change, or call
+ * {@link #clear()} when they do.
+ * <p>
+ * The cache holds up to a fixed number of bytes, evicting the least recently
+ * used outputs first. Only successful conversions are cached. Concurrent
+ * requests for the same output wait for a single conversion.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class OutputCache {
+    private final long maxSize;
+    private final DiskOutputCache diskCache;
+    private final LinkedHashMap<String, Result> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<Result>> inFlight = new ConcurrentHashMap<>();
+    private long size;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Constructor for {@code OutputCache}.
+     * @param maxSize The maximum total size of the cached outputs in bytes.
+     *                Value must be greater than 0.
+     */
+    public OutputCache(long maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * Constructor for {@code OutputCache}, backed by a disk cache that is
+     * consulted before running a conversion that is not cached in memory.
+     * @param maxSize The maximum total size of the outputs cached in memory
+     *                in bytes. Value must be greater than 0.
+     * @param diskCache The disk cache, or null for none.
+     */
+    public OutputCache(long maxSize, DiskOutputCache diskCache) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("invalid maxSize value (must be > 0)");
+        }
+        this.maxSize = maxSize;
+        this.diskCache = diskCache;
+    }
+
+    /**
+     * The number of conversions answered from the cache, including those that
+     * waited for an identical conversion already in progress and shared its
+     * result.
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * The number of conversions not found in memory, which were then either
+     * read from the disk cache or run.
+     * @return The miss count.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * The number of outputs evicted to stay within the maximum size.
+     * @return The eviction count.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * The total size of the cached outputs in bytes.
+     * @return The size.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * The number of cached outputs.
+     * @return The entry count.
+     */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Discard all cached outputs.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Get the result for {@code key}, running {@code conversion} if it is
+     * neither cached nor already being converted by another thread.
+     */
+    Result get(String key, Conversion conversion) throws IOException {
+        Result result = lookup(key);
+        if (result != null) {
+            hitCount.incrementAndGet();
+            return result;
+        }
+
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        CompletableFuture<Result> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            // Only a conversion that completes is shared, so a waiter is not
+            // counted until then.
+            result = Util.await(existing);
+            hitCount.incrementAndGet();
+            return result;
+        }
+
+        try {
+            // Another thread may have finished the same conversion since the
+            // lookup above.
+            result = lookup(key);
+            if (result != null) {
+                hitCount.incrementAndGet();
+            } else {
+                missCount.incrementAndGet();
+                result = diskCache != null ? diskCache.get(key, conversion) : conversion.convert();
+                if (result.success) {
+                    put(key, result);
+                }
+            }
+            future.complete(result);
+            return result;
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Get the cached result for {@code key}, or null.
+     */
+    synchronized Result lookup(String key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(String key, Result result) {
+        long resultSize = result.size();
+        if (resultSize > maxSize) {
+            return;
+        }
+
+        Result old = entries.put(key, result);
+        if (old != null) {
+            size -= old.size();
+        }
+        size += resultSize;
+
+        Iterator<Result> it = entries.values().iterator();
+        while (size > maxSize && it.hasNext()) {
+            size -= it.next().size();
+            it.remove();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Runs a conversion, capturing its output and log.
+     */
+    interface Conversion {
+        Result convert() throws IOException;
+    }
+
+    /**
+     * The output of a conversion and its structured log, from which the
+     * messages and the result are replayed.
+     */
+    static final class Result {
+        final byte[] pdf;
+        final byte[] log;
+        final boolean success;
+
+        Result(byte[] pdf, byte[] log) {
+            this.pdf = pdf;
+            this.log = log;
+            this.success = succeeded(log);
+        }
+
+        long size() {
+            return (long) pdf.length + log.length;
+        }
+
+        BufferedReader newLogReader() {
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(log)));
+        }
+
+        private static boolean succeeded(byte[] log) {
+            String fin = "fin|success";
+            for (int start = 0; start < log.length; ) {
+                int end = start;
+                while (end < log.length && log[end] != '\n') {
+                    end++;
+                }
+                int lineEnd = end > start && log[end - 1] == '\r' ? end - 1 : end;
+                if (lineEnd - start == fin.length() && matches(log, start, fin)) {
+                    return true;
+                }
+                start = end + 1;
+            }
+            return false;
+        }
+
+        private static boolean matches(byte[] bytes, int offset, String s) {
+            for (int i = 0; i < s.length(); i++) {
+                if (bytes[offset + i] != s.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the output of a conversion as a stream of byte buffers, for
+ * non-blocking servers. The {@link Subscriber} and {@link Subscription}
+ * interfaces have the same methods as those of
+ * {@code java.util.concurrent.Flow}, so they can be adapted to it, or to
+ * Reactive Streams, with a thin wrapper.
+ * <p>
+ * The conversion starts when a subscriber subscribes, and runs on a thread
+ * of the given executor, e.g.
+ * <pre>
+ * new OutputPublisher(out -&gt; prince.convert("doc.html", out), executor)
+ *         .subscribe(subscriber);
+ * </pre>
+ * Output is read from Prince into a ring of four 64 KB buffers that belong
+ * to the publisher, and are not shared with other publishers. Buffers are
+ * only passed to the subscriber as it requests them. When the subscriber
+ * stops requesting, the ring fills up and reading from Prince pauses, so a
+ * slow client never causes unbounded buffering.
+ * <p>
+ * <b>The buffers are reused:</b> a buffer passed to
+ * {@link Subscriber#onNext(ByteBuffer)} is only valid until that method
+ * returns. A subscriber that hands buffers on asynchronously, such as an
+ * adapter to {@code Flow} or Reactive Streams, has to copy each one first.
+ * <p>
+ * Process pipes cannot be read without blocking, so the conversion occupies
+ * an executor thread until it has finished. While the ring is full, that
+ * thread waits for the subscriber to request more, so a slow subscriber
+ * holds one thread for the whole conversion. If the subscription is
+ * cancelled, the rest of the output is read and discarded, which keeps a
+ * {@link PrinceControl} process usable.
+ * <p>
+ * A publisher supports a single subscriber.
+ */
+public final class OutputPublisher {
+    private static final int BUFFER_SIZE = Util.BUFFER_SIZE;
+    private static final int BUFFER_COUNT = 4;
+
+    /**
+     * Receives the output of a conversion.
+     */
+    public interface Subscriber {
+        /**
+         * Called once, before any other method.
+         * @param subscription The subscription, used to request output.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next part of the output, no more often than
+         * requested.
+         * @param buffer The output, which is only valid until this method
+         *               returns, as the buffer is then reused.
+         */
+        void onNext(ByteBuffer buffer);
+
+        /**
+         * Called if the conversion fails, after which no other method is
+         * called.
+         * @param throwable The failure.
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called after all of the output of a successful conversion, after
+         * which no other method is called.
+         */
+        void onComplete();
+    }
+
+    /**
+     * Controls the flow of output to a subscriber.
+     */
+    public interface Subscription {
+        /**
+         * Request {@code n} more buffers of output.
+         * @param n The number of buffers. Value must be greater than 0.
+         */
+        void request(long n);
+
+        /**
+         * Stop receiving output.
+         */
+        void cancel();
+    }
+
+    /**
+     * Runs a conversion, writing its output to a stream.
+     */
+    @FunctionalInterface
+    public interface Conversion {
+        /**
+         * Run the conversion.
+         * @param output The OutputStream to write the output to.
+         * @return true if the conversion was successful.
+         * @throws IOException If an I/O error occurs.
+         */
+        boolean convert(OutputStream output) throws IOException;
+    }
+
+    private final Conversion conversion;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Constructor for {@code OutputPublisher}.
+     * @param conversion The conversion, such as a call to
+     *                   {@link Prince#convert(String, OutputStream)}.
+     * @param executor The executor to run the conversion on.
+     */
+    public OutputPublisher(Conversion conversion, Executor executor) {
+        this.conversion = Objects.requireNonNull(conversion);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * Subscribe to the output, starting the conversion.
+     * @param subscriber The subscriber.
+     */
+    public void subscribe(Subscriber subscriber) {
+        Objects.requireNonNull(subscriber);
+
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {}
+
+                @Override
+                public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("publisher already has a subscriber"));
+            return;
+        }
+
+        Pump pump = new Pump(subscriber);
+        subscriber.onSubscribe(pump);
+        try {
+            executor.execute(pump::run);
+        } catch (RejectedExecutionException e) {
+            pump.finish(e);
+        }
+    }
+
+    /**
+     * The stream the conversion writes to, and the subscription that
+     * delivers what was written.
+     */
+    private final class Pump extends OutputStream implements Subscription {
+        private final Subscriber subscriber;
+        private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BUFFER_COUNT);
+        private final Queue<ByteBuffer> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicLong demand = new AtomicLong();
+        // Ensures that only one thread at a time signals the subscriber.
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private volatile Throwable error;
+        private volatile Throwable requestError;
+        private boolean terminated;
+        private ByteBuffer current;
+
+        Pump(Subscriber subscriber) {
+            this.subscriber = subscriber;
+            for (int i = 0; i < BUFFER_COUNT; i++) {
+                free.add(ByteBuffer.allocate(BUFFER_SIZE));
+            }
+        }
+
+        void run() {
+            Throwable failure = null;
+            try {
+                if (!conversion.convert(this)) {
+                    failure = new IOException("conversion failed");
+                }
+                if (current != null && current.position() > 0) {
+                    publish();
+                }
+            } catch (Throwable t) {
+                failure = t;
+            }
+            finish(failure);
+        }
+
+        void finish(Throwable failure) {
+            error = failure;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0 && !cancelled) {
+                if (current == null) {
+                    try {
+                        // Blocks while the subscriber has not caught up.
+                        current = free.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("interrupted while waiting for subscriber");
+                    }
+                }
+
+                int n = Math.min(len, current.remaining());
+                current.put(b, off, n);
+                off += n;
+                len -= n;
+
+                if (!current.hasRemaining()) {
+                    publish();
+                }
+            }
+        }
+
+        private void publish() {
+            ((Buffer) current).flip();
+            ready.add(current);
+            current = null;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                requestError = new IllegalArgumentException("invalid request value (must be > 0)");
+                cancelled = true;
+            } else {
+                demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            do {
+                ByteBuffer b;
+                while (!cancelled && demand.get() > 0 && (b = ready.poll()) != null) {
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    try {
+                        subscriber.onNext(b);
+                    } catch (Throwable t) {
+                        // A subscriber that throws is treated as cancelled.
+                        cancelled = true;
+                    } finally {
+                        recycle(b);
+                    }
+                }
+
+                if (cancelled) {
+                    // Free the ring so that the conversion can finish.
+                    while ((b = ready.poll()) != null) {
+                        recycle(b);
+                    }
+                }
+
+                if (!terminated) {
+                    if (requestError != null) {
+                        terminated = true;
+                        subscriber.onError(requestError);
+                    } else if (!cancelled && done && ready.isEmpty()) {
+                        terminated = true;
+                        if (error != null) {
+                            subscriber.onError(error);
+                        } else {
+                            subscriber.onComplete();
+                        }
+                    }
+                }
+
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void recycle(ByteBuffer b) {
+            ((Buffer) b).clear();
+            free.offer(b);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of documents that crashed or hung a control process, so that
+ * one malformed document cannot take down one process after another. It is
+ * used by {@link PrinceControlPool#execute(String, PrinceControlPool.Task, PrinceControlPool.Fallback)}.
+ * <p>
+ * Documents are identified by a key, such as a fingerprint of their content
+ * from {@link #fingerprint(byte[])}. Once a document has failed the threshold
+ * number of times, it is quarantined: it no longer runs on the pool, but on
+ * a fallback such as a one-shot {@link Prince} process, or is rejected.
+ * Failures are forgotten after the expiry time, and only the most recent
+ * documents to fail are remembered.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class PoisonQuarantine {
+    private static final int MAX_ENTRIES = 10000;
+
+    private final int threshold;
+    private volatile long expiry = 86400;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Constructor for {@code PoisonQuarantine}.
+     * @param threshold The number of failures after which a document is
+     *                  quarantined. Value must be greater than 0.
+     */
+    public PoisonQuarantine(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("invalid threshold value (must be > 0)");
+        }
+        this.threshold = threshold;
+    }
+
+    /**
+     * Set how long failures are remembered after the last one. Default value
+     * is {@code 86400} (one day).
+     * @param expiry The expiry time in seconds. Value must be greater than 0.
+     */
+    public void setExpiry(long expiry) {
+        if (expiry < 1) {
+            throw new IllegalArgumentException("invalid expiry value (must be > 0)");
+        }
+        this.expiry = expiry;
+    }
+
+    /**
+     * A key for a document, from its content.
+     * @param document The document.
+     * @return The key.
+     */
+    public static String fingerprint(byte[] document) {
+        return new Fingerprint().add(document).finish();
+    }
+
+    /**
+     * A key for a document, from its content.
+     * @param document The path of the document.
+     * @return The key.
+     * @throws IOException If the document cannot be read.
+     */
+    public static String fingerprint(Path document) throws IOException {
+        return new Fingerprint().addFile(document).finish();
+    }
+
+    /**
+     * Whether a document is quarantined.
+     * @param key The key of the document.
+     * @return true if the document has failed the threshold number of times.
+     */
+    public boolean isQuarantined(String key) {
+        return getFailureCount(key) >= threshold;
+    }
+
+    /**
+     * The number of remembered failures of a document.
+     * @param key The key of the document.
+     * @return The failure count.
+     */
+    public synchronized int getFailureCount(String key) {
+        Entry e = entries.get(key);
+        if (e == null) {
+            return 0;
+        }
+        if (e.isExpired(System.nanoTime())) {
+            entries.remove(key);
+            return 0;
+        }
+        return e.count;
+    }
+
+    /**
+     * The number of quarantined documents.
+     * @return The quarantined count.
+     */
+    public synchronized int getQuarantinedCount() {
+        long now = System.nanoTime();
+        int count = 0;
+        for (Entry e : entries.values()) {
+            if (e.count >= threshold && !e.isExpired(now)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Forget the failures of a document, such as after it has been fixed.
+     * @param key The key of the document.
+     */
+    public synchronized void release(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Record a failure of a document.
+     * @return true if the document is now quarantined.
+     */
+    synchronized boolean recordFailure(String key) {
+        long now = System.nanoTime();
+        Entry e = entries.get(key);
+        if (e == null || e.isExpired(now)) {
+            e = new Entry();
+            entries.put(key, e);
+        }
+        e.count++;
+        e.lastFailure = now;
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > MAX_ENTRIES && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        return e.count >= threshold;
+    }
+
+    private final class Entry {
+        int count;
+        long lastFailure;
+
+        boolean isExpired(long now) {
+            return now - lastFailure > TimeUnit.SECONDS.toNanos(expiry);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2006, 2010, 2012, 2014-2015, 2018, 2021-2022 YesLogic Pty. Ltd.
+ * Copyright (C) 2005-2006, 2010, 2012, 2014-2015, 2018, 2021-2022, 2026 YesLogic Pty. Ltd.
  * All rights reserved.
  */
 
@@ -42,6 +42,8 @@ public class Prince extends AbstractPrince {
     // Additional options.
     private final List<Pair> options = new ArrayList<>();
 
+    private volatile StandbyProcesses standby;
+
     /**
      * Constructor for {@code Prince}.
      * @param princePath The path of the Prince executable. For example, this may be
@@ -123,6 +125,16 @@ public class Prince extends AbstractPrince {
         cmdLine.addAll(inputPaths);
         cmdLine.add(toCommand("output", "-"));
 
+        if (outputCache != null) {
+            Fingerprint fingerprint = fingerprint(cmdLine);
+            for (String inputPath : inputPaths) {
+                fingerprint.addReference(inputPath);
+            }
+            try (MemoryBudget.Reservation reservation = reserve(0)) {
+                return convertCached(fingerprint.finish(), cmdLine, null, reservation, output);
+            }
+        }
+
         Process process = Util.invokeProcess(cmdLine);
 
         try (InputStream fromPrince = process.getInputStream()) {
@@ -142,7 +154,12 @@ public class Prince extends AbstractPrince {
         List<String> cmdLine = getJobCommandLine("buffered");
         cmdLine.add("-");
 
-        Process process = Util.invokeProcess(cmdLine);
+        if (outputCache != null) {
+            // The input has to be read in full to be fingerprinted.
+            return convertCached(cmdLine, buffer -> Util.copyInputToOutput(input, buffer), output);
+        }
+
+        Process process = launchStdin(cmdLine);
 
         try (OutputStream toPrince = process.getOutputStream()) {
             Util.copyInputToOutput(input, toPrince);
@@ -155,6 +172,79 @@ public class Prince extends AbstractPrince {
         return readMessagesFromStderr(process);
     }
 
+    private Fingerprint fingerprint(List<String> cmdLine) throws IOException {
+        Fingerprint fingerprint = new Fingerprint().add("prince");
+        for (String arg : cmdLine) {
+            fingerprint.add(arg);
+        }
+        fingerprintReferences(fingerprint);
+        return fingerprint;
+    }
+
+    /**
+     * Convert a document from stdin with the output cache. The document is
+     * buffered within the memory budget, and spilled to a temporary file
+     * beyond it, so that it is never held in memory before it is admitted.
+     */
+    private boolean convertCached(List<String> cmdLine, IOConsumer<OutputStream> producer, OutputStream output)
+            throws IOException {
+        try (MemoryBudget.Reservation reservation = reserve(0)) {
+            SpillOutputStream buffer = new SpillOutputStream(Long.MAX_VALUE, null, reservation);
+            try {
+                producer.accept(buffer);
+                buffer.close();
+            } catch (IOException | RuntimeException e) {
+                buffer.discard();
+                throw e;
+            }
+
+            JobResource input = buffer.toJobResource();
+            try {
+                Fingerprint fingerprint = fingerprint(cmdLine);
+                input.fingerprint(fingerprint);
+                return convertCached(fingerprint.finish(), cmdLine, input, reservation, output);
+            } finally {
+                input.release();
+            }
+        }
+    }
+
+    private boolean convertCached(String key, List<String> cmdLine, JobResource input,
+                                  MemoryBudget.Reservation reservation, OutputStream output) throws IOException {
+        OutputCache.Result result = outputCache.get(key, () -> {
+            Process process = input != null ? launchStdin(cmdLine) : Util.invokeProcess(cmdLine);
+
+            if (input != null) {
+                try (OutputStream toPrince = process.getOutputStream();
+                     InputStream in = input.newInputStream()) {
+                    Util.copyInputToOutput(in, toPrince);
+                }
+            }
+
+            ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+            try (InputStream fromPrince = process.getInputStream()) {
+                Util.copyInputToOutput(fromPrince, pdf);
+            }
+
+            ByteArrayOutputStream log = new ByteArrayOutputStream();
+            try (InputStream err = process.getErrorStream()) {
+                Util.copyInputToOutput(err, log);
+            }
+
+            OutputCache.Result r = new OutputCache.Result(pdf.toByteArray(), log.toByteArray());
+            if (reservation != null) {
+                // The captured output is held until it has been replayed.
+                reservation.grow(r.size());
+            }
+            return r;
+        });
+
+        output.write(result.pdf);
+        try (BufferedReader reader = result.newLogReader()) {
+            return readMessages(reader);
+        }
+    }
+
     /**
      * Convert multiple XML or HTML files to a PDF file by reading an input list
      * from a specified file. (An input list is a newline-separated sequence of
@@ -229,9 +319,48 @@ public class Prince extends AbstractPrince {
     /** {@inheritDoc} */
     @Override
     public boolean convertString(String input, OutputStream output) throws IOException {
-        try (InputStream in = new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))) {
-            return convert(in, output);
+        return convert(w -> w.write(input), output);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The document is streamed to Prince as it is produced, so producing and
+     * parsing it overlap.
+     */
+    @Override
+    public boolean convert(IOConsumer<Writer> producer, OutputStream output) throws IOException {
+        if (inputType == null || inputType == InputType.AUTO) {
+            throw new RuntimeException("inputType has to be set to XML or HTML");
+        }
+
+        List<String> cmdLine = getJobCommandLine("buffered");
+        cmdLine.add("-");
+
+        if (outputCache != null) {
+            // The input has to be produced in full to be fingerprinted.
+            return convertCached(cmdLine, buffer -> {
+                try (Writer w = new OutputStreamWriter(buffer, StandardCharsets.UTF_8)) {
+                    producer.accept(w);
+                }
+            }, output);
+        }
+
+        Process process = launchStdin(cmdLine);
+
+        try (Writer toPrince = new BufferedWriter(
+                new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8), Util.BUFFER_SIZE)) {
+            producer.accept(toPrince);
+        } catch (IOException | RuntimeException e) {
+            process.destroy();
+            throw e;
         }
+
+        try (InputStream fromPrince = process.getInputStream()) {
+            Util.copyInputToOutput(fromPrince, output);
+        }
+
+        return readMessagesFromStderr(process);
     }
 
     /**
@@ -446,7 +575,72 @@ public class Prince extends AbstractPrince {
         }
     }
 
-    private List<String> getJobCommandLine(String logType) {
+    /**
+     * Keep {@code standbyCount} Prince processes launched ahead of time and
+     * waiting for a document on stdin, so that conversions from an
+     * {@code InputStream}, a {@code String} or a producer to an
+     * {@code OutputStream} do not wait for a process to start. A standby
+     * process is only used by a conversion with exactly the same command
+     * line. Processes are replaced in the background as they are used, and
+     * with the command line of the latest conversion if it differs, so
+     * options should be set before conversions start. Default value is
+     * {@code 0} (no standby processes).
+     * @param standbyCount The number of standby processes. Value must not be negative.
+     */
+    public void setStandbyCount(int standbyCount) {
+        if (standbyCount < 0) {
+            throw new IllegalArgumentException("invalid standbyCount value (must be >= 0)");
+        }
+        stopStandby();
+        if (standbyCount > 0) {
+            List<String> cmdLine = getJobCommandLine("buffered");
+            cmdLine.add("-");
+            standby = new StandbyProcesses(standbyCount, cmdLine);
+        }
+    }
+
+    /**
+     * Destroy the standby processes, and stop replacing them.
+     */
+    public void stopStandby() {
+        StandbyProcesses s = standby;
+        standby = null;
+        if (s != null) {
+            s.close();
+        }
+    }
+
+    /**
+     * The number of standby processes ready for a conversion.
+     * @return The ready count.
+     */
+    public int getStandbyReadyCount() {
+        StandbyProcesses s = standby;
+        return s != null ? s.getReadyCount() : 0;
+    }
+
+    /**
+     * Launch a process that reads its document from stdin and writes its
+     * output to stdout, using a standby process if there is a matching one.
+     * Other processes must not be standbys, as Prince converts an empty
+     * document when stdin is closed.
+     */
+    private Process launchStdin(List<String> cmdLine) throws IOException {
+        StandbyProcesses s = standby;
+        Process process = s != null ? s.take(cmdLine) : null;
+        return process != null ? process : Util.invokeProcess(cmdLine);
+    }
+
+    /**
+     * Whether any option is set that control processes do not support, so
+     * that conversions have to run in a one-shot process.
+     */
+    boolean requiresOneShot() {
+        return !remaps.isEmpty() || pageSize != null || pageMargin != null || noSystemFonts || cssDpi > 0
+                || !options.isEmpty();
+    }
+
+    List<String> getJobCommandLine(String logType) {
         List<String> cmdLine = getBaseCommandLine();
 
         cmdLine.add(toCommand("structured-log", logType));
@@ -536,6 +730,7 @@ public class Prince extends AbstractPrince {
      */
     public void addRemap(String url, String directory) {
         this.remaps.add(url + "=" + directory);
+        configChanged();
     }
 
     /**
@@ -543,6 +738,7 @@ public class Prince extends AbstractPrince {
      */
     public void clearRemaps() {
         this.remaps.clear();
+        configChanged();
     }
     //endregion
 
@@ -553,6 +749,7 @@ public class Prince extends AbstractPrince {
      */
     public void setPageSize(String pageSize) {
         this.pageSize = pageSize;
+        configChanged();
     }
 
     /**
@@ -561,6 +758,7 @@ public class Prince extends AbstractPrince {
      */
     public void setPageMargin(String pageMargin) {
         this.pageMargin = pageMargin;
+        configChanged();
     }
     //endregion
 
@@ -572,6 +770,7 @@ public class Prince extends AbstractPrince {
      */
     public void setNoSystemFonts(boolean noSystemFonts) {
         this.noSystemFonts = noSystemFonts;
+        configChanged();
     }
 
     /**
@@ -583,6 +782,7 @@ public class Prince extends AbstractPrince {
             throw new IllegalArgumentException("invalid cssDpi value (must be > 0)");
         }
         this.cssDpi = cssDpi;
+        configChanged();
     }
     //endregion
 
@@ -594,6 +794,7 @@ public class Prince extends AbstractPrince {
      */
     public void setRasterFormat(RasterFormat rasterFormat) {
         this.rasterFormat = rasterFormat;
+        configChanged();
     }
 
     /**
@@ -607,6 +808,7 @@ public class Prince extends AbstractPrince {
             throw new IllegalArgumentException("invalid rasterJpegQuality value (must be [0, 100])");
         }
         this.rasterJpegQuality = rasterJpegQuality;
+        configChanged();
     }
 
     /**
@@ -618,6 +820,7 @@ public class Prince extends AbstractPrince {
             throw new IllegalArgumentException("invalid rasterPage value (must be > 0)");
         }
         this.rasterPage = rasterPage;
+        configChanged();
     }
 
     /**
@@ -629,6 +832,7 @@ public class Prince extends AbstractPrince {
             throw new IllegalArgumentException("invalid rasterDpi value (must be > 0)");
         }
         this.rasterDpi = rasterDpi;
+        configChanged();
     }
 
     /**
@@ -638,6 +842,7 @@ public class Prince extends AbstractPrince {
      */
     public void setRasterThreads(int rasterThreads) {
         this.rasterThreads = rasterThreads;
+        configChanged();
     }
 
     /**
@@ -647,6 +852,7 @@ public class Prince extends AbstractPrince {
      */
     public void setRasterBackground(RasterBackground rasterBackground) {
         this.rasterBackground = rasterBackground;
+        configChanged();
     }
     //endregion
 
@@ -657,6 +863,7 @@ public class Prince extends AbstractPrince {
      */
     public void addOption(String key) {
         this.options.add(new Pair(key));
+        configChanged();
     }
 
     /**
@@ -666,6 +873,7 @@ public class Prince extends AbstractPrince {
      */
     public void addOption(String key, String value) {
         this.options.add(new Pair(key, value));
+        configChanged();
     }
 
     /**
@@ -674,6 +882,7 @@ public class Prince extends AbstractPrince {
      */
     public void clearOptions() {
         this.options.clear();
+        configChanged();
     }
     //endregion
 }
@@ -1,18 +1,27 @@
 /*
- * Copyright (C) 2015, 2018, 2021-2022 YesLogic Pty. Ltd.
+ * Copyright (C) 2015, 2018, 2021-2022, 2026 YesLogic Pty. Ltd.
  * All rights reserved.
  */
 
 package com.princexml.wrapper;
 
 import com.princexml.wrapper.enums.InputType;
+import com.princexml.wrapper.enums.JobFeature;
 import com.princexml.wrapper.enums.PdfEvent;
 import com.princexml.wrapper.events.PrinceEvents;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static com.princexml.wrapper.CommandLine.toCommand;
 
@@ -21,10 +30,38 @@ import static com.princexml.wrapper.CommandLine.toCommand;
  * for multiple consecutive document conversions.
  */
 public class PrinceControl extends AbstractPrince {
+    private static final long STOP_TIMEOUT = 10000;
+    private static final byte[] PROBE_DOCUMENT =
+            "<!DOCTYPE html><html><body><p>probe</p></body></html>".getBytes(StandardCharsets.UTF_8);
+    // Guarded by PrinceControl.class.
+    private static Path probePath;
+
     private Process process;
+    private StderrDrainer stderrDrainer;
+    private int stderrBufferSize = 16384;
+    private List<String> commandLine;
     private String version;
+    private Function<String, Set<JobFeature>> capabilityResolver;
+    private Capabilities capabilities;
     private final List<String> inputPaths;
-    private final List<byte[]> resources;
+    private final List<JobResource> resources;
+    private final List<JobResource> jobResources;
+    private final Json jobJson = new Json();
+    private long chunkMemoryThreshold = Long.MAX_VALUE;
+    private Path chunkSpillDirectory;
+    private MemoryBudget.Reservation reservation;
+    // Set while a job has been sent but its response not read in full.
+    private boolean inJob;
+    // Held for the duration of a conversion, so that stop() can wait for it.
+    private final ReentrantLock jobLock = new ReentrantLock();
+    private volatile boolean stopping;
+    private Thread shutdownHook;
+
+    // The job JSON for the current options, with gaps for the input sources
+    // and the resource count, which are the only parts that vary between jobs.
+    private byte[] jobTemplate;
+    private int jobTemplateSrcPos;
+    private int jobTemplateCountPos;
 
     /**
      * Constructor for {@code PrinceControl}.
@@ -48,20 +85,19 @@ public class PrinceControl extends AbstractPrince {
         super(princePath, events);
         this.inputPaths = new ArrayList<>();
         this.resources = new ArrayList<>();
+        this.jobResources = new ArrayList<>();
     }
 
     /** {@inheritDoc} */
     @Override
     public boolean convert(String inputPath, OutputStream output) throws IOException {
-        inputPaths.add(inputPath);
-        return convert(output);
+        return convert(() -> inputPaths.add(inputPath), output);
     }
 
     /** {@inheritDoc} */
     @Override
     public boolean convert(List<String> inputPaths, OutputStream output) throws IOException {
-        this.inputPaths.addAll(inputPaths);
-        return convert(output);
+        return convert(() -> this.inputPaths.addAll(inputPaths), output);
     }
 
     /** {@inheritDoc} */
@@ -71,12 +107,8 @@ public class PrinceControl extends AbstractPrince {
             throw new RuntimeException("inputType has to be set to XML or HTML");
         }
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            Util.copyInputToOutput(input, baos);
-            addResource(baos.toByteArray());
-        }
-
-        return convert(output);
+        return convert(() -> addResource(produce(Long.MAX_VALUE, buffer -> Util.copyInputToOutput(input, buffer))),
+                output);
     }
 
     /** {@inheritDoc} */
@@ -86,36 +118,361 @@ public class PrinceControl extends AbstractPrince {
             throw new RuntimeException("inputType has to be set to XML or HTML");
         }
 
-        addResource(input.getBytes(StandardCharsets.UTF_8));
-        return convert(output);
+        return convert(() -> addResource(input.getBytes(StandardCharsets.UTF_8)), output);
     }
 
-    private boolean convert(OutputStream output) throws IOException {
-        if (process == null) {
-            throw new RuntimeException("control process has not been started");
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The document is sent to the control process as a single chunk once it
+     * is complete, so it is buffered in memory up to the
+     * {@linkplain #setChunkMemoryThreshold(long) chunk memory threshold} and
+     * in a temporary file beyond that.
+     */
+    @Override
+    public boolean convert(IOConsumer<Writer> producer, OutputStream output) throws IOException {
+        if (inputType == null || inputType == InputType.AUTO) {
+            throw new RuntimeException("inputType has to be set to XML or HTML");
         }
 
+        return convert(() -> addResource(produce(chunkMemoryThreshold, buffer -> {
+            try (Writer w = new OutputStreamWriter(buffer, StandardCharsets.UTF_8)) {
+                producer.accept(w);
+            }
+        })), output);
+    }
+
+    /**
+     * Convert an XML or HTML stream to a PDF file. Unlike
+     * {@link #convert(InputStream, OutputStream)}, the input is not read into
+     * memory up front: the supplier is only called, and the stream it returns
+     * read, while the job is being sent to the control process.
+     * @param input Supplies the stream from which Prince will read the XML or
+     *              HTML document. It may throw {@link java.io.UncheckedIOException}.
+     * @param length The exact length of the stream in bytes.
+     * @param output The OutputStream to which Prince will write the PDF output.
+     * @return true if a PDF file was generated successfully.
+     * @throws IOException If an I/O error occurs, including if the stream is
+     *                     not exactly {@code length} bytes long. The control
+     *                     process should be restarted after such an error.
+     */
+    public boolean convert(Supplier<InputStream> input, long length, OutputStream output) throws IOException {
+        if (inputType == null || inputType == InputType.AUTO) {
+            throw new RuntimeException("inputType has to be set to XML or HTML");
+        }
+
+        return convert(() -> addResource(JobResource.of(input, length)), output);
+    }
+
+    /**
+     * Convert an XML or HTML file to a PDF file. The PDF is streamed from the
+     * control process into a temporary file in the same directory as
+     * {@code output}, which is then atomically renamed to {@code output} if
+     * the conversion succeeds, and deleted otherwise. Existing files are
+     * replaced.
+     * @param inputPath The filename of the input XML or HTML document.
+     * @param output The path of the output PDF file.
+     * @return true if a PDF file was generated successfully.
+     * @throws IOException If an I/O error occurs.
+     */
+    public boolean convert(String inputPath, Path output) throws IOException {
+        return convertInternal(() -> inputPaths.add(inputPath), null, output);
+    }
+
+    /**
+     * Convert multiple XML or HTML files to a PDF file. See
+     * {@link #convert(String, Path)} for how the output file is written.
+     * @param inputPaths The filenames of the input XML or HTML documents.
+     * @param output The path of the output PDF file.
+     * @return true if a PDF file was generated successfully.
+     * @throws IOException If an I/O error occurs.
+     */
+    public boolean convert(List<String> inputPaths, Path output) throws IOException {
+        return convertInternal(() -> this.inputPaths.addAll(inputPaths), null, output);
+    }
+
+    /**
+     * Convert an XML or HTML stream to a PDF file. See
+     * {@link #convert(String, Path)} for how the output file is written.
+     * @param input The InputStream from which Prince will read the XML or HTML
+     *              document.
+     * @param output The path of the output PDF file.
+     * @return true if a PDF file was generated successfully.
+     * @throws IOException If an I/O error occurs.
+     */
+    public boolean convert(InputStream input, Path output) throws IOException {
+        if (inputType == null || inputType == InputType.AUTO) {
+            throw new RuntimeException("inputType has to be set to XML or HTML");
+        }
+
+        return convertInternal(() -> addResource(produce(Long.MAX_VALUE,
+                buffer -> Util.copyInputToOutput(input, buffer))), null, output);
+    }
+
+    /**
+     * Convert an XML or HTML string to a PDF file. See
+     * {@link #convert(String, Path)} for how the output file is written.
+     * @param input The XML or HTML document in the form of a String.
+     * @param output The path of the output PDF file.
+     * @return true if a PDF file was generated successfully.
+     * @throws IOException If an I/O error occurs.
+     */
+    public boolean convertString(String input, Path output) throws IOException {
+        if (inputType == null || inputType == InputType.AUTO) {
+            throw new RuntimeException("inputType has to be set to XML or HTML");
+        }
+
+        return convertInternal(() -> addResource(input.getBytes(StandardCharsets.UTF_8)), null, output);
+    }
+
+    private boolean convert(JobInputs inputs, OutputStream output) throws IOException {
+        return convertInternal(inputs, output, null);
+    }
+
+    /**
+     * Run one job. The inputs are only added once the job lock is held, so
+     * that concurrent callers cannot add to each other's jobs, and are
+     * cleared when the job ends, so that they do not carry over to the next.
+     */
+    private boolean convertInternal(JobInputs inputs, OutputStream output, Path outputPath) throws IOException {
+        jobLock.lock();
+        try {
+            if (process == null) {
+                throw new RuntimeException("control process has not been started");
+            }
+            if (stopping) {
+                throw new RuntimeException("control process is stopping");
+            }
+
+            inputs.add();
+            admit();
+            if (outputCache != null) {
+                return convertCached(output, outputPath);
+            }
+            return convertJob(getJobJson(), resources, jobResources, output, outputPath);
+        } catch (IOException e) {
+            throw withStderr(e);
+        } finally {
+            // Inputs only apply to the job they were given for.
+            inputPaths.clear();
+            jobResources.forEach(JobResource::release);
+            jobResources.clear();
+            releaseReservation();
+            jobLock.unlock();
+        }
+    }
+
+    /**
+     * Convert a tiny document to check that the process still responds. The
+     * probe is a minimal job, without the options and resources configured
+     * for conversions, so that it measures the process rather than the
+     * workload. The output cache is bypassed, so that the process itself is
+     * exercised. The probe is admitted by the memory budget like any
+     * conversion, but does not wait for it.
+     * @return false if the probe was skipped because the memory budget had
+     *         no room for it.
+     * @throws IOException If the conversion fails.
+     */
+    boolean probe() throws IOException {
+        jobLock.lock();
+        try {
+            if (process == null) {
+                throw new RuntimeException("control process has not been started");
+            }
+            if (stopping) {
+                throw new RuntimeException("control process is stopping");
+            }
+            if (memoryBudget != null) {
+                // A buffer for the output.
+                reservation = memoryBudget.tryReserve(Util.BUFFER_SIZE);
+                if (reservation == null) {
+                    return false;
+                }
+            }
+
+            List<JobResource> none = Collections.emptyList();
+            if (!convertJob(getProbeJson(), none, none, new ByteArrayOutputStream(), null)) {
+                throw new IOException("probe conversion failed");
+            }
+            return true;
+        } catch (IOException e) {
+            throw withStderr(e);
+        } finally {
+            releaseReservation();
+            jobLock.unlock();
+        }
+    }
+
+    /**
+     * The job for a probe, which only names the probe document.
+     */
+    private static Json getProbeJson() throws IOException {
+        Json json = new Json();
+        json.beginObj();
+        json.beginObj("input");
+        json.beginList("src");
+        json.value(getProbePath().toString());
+        json.endList();
+        json.field("type", InputType.HTML.toString());
+        json.endObj();
+        json.field("job-resource-count", 0);
+        json.endObj();
+        return json;
+    }
+
+    /**
+     * The probe document, written once per JVM and shared by all control
+     * processes. It is only written again if it has been removed, such as by
+     * a temporary-file cleaner.
+     */
+    private static synchronized Path getProbePath() throws IOException {
+        if (probePath == null || !Files.exists(probePath)) {
+            Path path = Files.createTempFile("prince-probe-", ".html");
+            Files.write(path, PROBE_DOCUMENT);
+            path.toFile().deleteOnExit();
+            probePath = path;
+        }
+        return probePath;
+    }
+
+    private boolean convertJob(Json job, List<JobResource> resources, List<JobResource> jobResources,
+                               OutputStream output, Path outputPath) throws IOException {
         // These streams are closed in stop().
         OutputStream toPrince = process.getOutputStream();
         InputStream fromPrince = process.getInputStream();
 
-        Chunk.writeChunk(toPrince, "job", getJobJson());
-        for (byte[] r : resources) {
-            Chunk.writeChunk(toPrince, "dat", r);
+        sendJob(toPrince, job, resources, jobResources);
+
+        String tag = Chunk.readTag(fromPrince);
+        long length = Chunk.readLength(fromPrince);
+
+        Chunk pdf = null;
+        try {
+            if (tag.equals("pdf")) {
+                if (outputPath != null) {
+                    // Always spilled, next to the output so it can be renamed.
+                    pdf = Chunk.readData(fromPrince, tag, length, -1, getParent(outputPath));
+                } else {
+                    long threshold = chunkMemoryThreshold;
+                    if (reservation != null && length <= threshold && !reservation.tryGrow(length)) {
+                        // Spill rather than exceed the memory budget.
+                        threshold = -1;
+                    }
+                    pdf = Chunk.readData(fromPrince, tag, length, threshold, chunkSpillDirectory);
+                    pdf.writeTo(output);
+                }
+
+                tag = Chunk.readTag(fromPrince);
+                length = Chunk.readLength(fromPrince);
+            }
+
+            boolean result;
+            try (Chunk chunk = Chunk.readData(fromPrince, tag, length, Long.MAX_VALUE, null)) {
+                inJob = false;
+                if (tag.equals("log")) {
+                    try (BufferedReader br = new BufferedReader(new InputStreamReader(chunk.newInputStream()))) {
+                        result = readMessages(br);
+                    }
+                } else if (tag.equals("err")) {
+                    throw new IOException("error: " + chunk.getString());
+                } else {
+                    throw new IOException("unknown chunk: " + tag);
+                }
+            }
+
+            if (result && pdf != null && outputPath != null) {
+                Util.moveAtomically(pdf.getPath(), outputPath);
+            }
+            return result;
+        } finally {
+            if (pdf != null) {
+                pdf.close();
+            }
+        }
+    }
+
+    /**
+     * Send a job and its resources. The JSON is built by the caller, since a
+     * job that fails before anything is written leaves the process usable.
+     */
+    private void sendJob(OutputStream toPrince, Json job, List<JobResource> resources,
+                         List<JobResource> jobResources) throws IOException {
+        inJob = true;
+        Chunk.writeChunk(toPrince, "job", job);
+        for (JobResource r : resources) {
+            r.writeChunk(toPrince, "dat");
+        }
+        for (JobResource r : jobResources) {
+            r.writeChunk(toPrince, "dat");
         }
         toPrince.flush();
+    }
+
+    private boolean convertCached(OutputStream output, Path outputPath) throws IOException {
+        Fingerprint fingerprint = new Fingerprint().add("control");
+        for (String arg : commandLine) {
+            fingerprint.add(arg);
+        }
+        fingerprint.add(version);
+        fingerprint.add(getJobJson().toByteArray());
+        fingerprintReferences(fingerprint);
+        for (String inputPath : inputPaths) {
+            fingerprint.addReference(inputPath);
+        }
+        for (JobResource r : resources) {
+            r.fingerprint(fingerprint);
+        }
+        for (JobResource r : jobResources) {
+            r.fingerprint(fingerprint);
+        }
+
+        OutputCache.Result result = outputCache.get(fingerprint.finish(), this::renderJob);
+
+        boolean success;
+        try (BufferedReader reader = result.newLogReader()) {
+            if (outputPath == null) {
+                output.write(result.pdf);
+                return readMessages(reader);
+            }
+            success = readMessages(reader);
+        }
+
+        if (success) {
+            Path temp = Files.createTempFile(getParent(outputPath), "prince-", ".pdf");
+            try {
+                Files.write(temp, result.pdf);
+                Util.moveAtomically(temp, outputPath);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Run the current job, keeping the PDF and the log in memory.
+     */
+    private OutputCache.Result renderJob() throws IOException {
+        // These streams are closed in stop().
+        OutputStream toPrince = process.getOutputStream();
+        InputStream fromPrince = process.getInputStream();
+
+        sendJob(toPrince, getJobJson(), resources, jobResources);
 
         Chunk chunk = Chunk.readChunk(fromPrince);
+        byte[] pdf = new byte[0];
         if (chunk.getTag().equals("pdf")) {
-            output.write(chunk.getBytes());
+            pdf = chunk.getBytes();
+            if (reservation != null) {
+                // Held in memory for the cache regardless of the budget.
+                reservation.grow(pdf.length);
+            }
             chunk = Chunk.readChunk(fromPrince);
         }
+        inJob = false;
 
         if (chunk.getTag().equals("log")) {
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(
-                    new ByteArrayInputStream(chunk.getBytes())))) {
-                return readMessages(br);
-            }
+            return new OutputCache.Result(pdf, chunk.getBytes());
         } else if (chunk.getTag().equals("err")) {
             throw new IOException("error: " + chunk.getString());
         } else {
@@ -123,6 +480,11 @@ public class PrinceControl extends AbstractPrince {
         }
     }
 
+    private static Path getParent(Path path) {
+        Path parent = path.toAbsolutePath().getParent();
+        return parent != null ? parent : path.toAbsolutePath();
+    }
+
     /**
      * Start a Prince control process that can be used for multiple consecutive
      * document conversions.
@@ -137,6 +499,9 @@ public class PrinceControl extends AbstractPrince {
         cmdLine.add(toCommand("control"));
 
         process = Util.invokeProcess(cmdLine);
+        commandLine = cmdLine;
+        stderrDrainer = new StderrDrainer(process.getErrorStream(), stderrBufferSize,
+                this::handleNonStructuredMessage);
 
         // This stream is closed in stop().
         InputStream fromPrince = process.getInputStream();
@@ -144,31 +509,241 @@ public class PrinceControl extends AbstractPrince {
 
         if (chunk.getTag().equals("ver")) {
             version = chunk.getString();
+            if (capabilityResolver != null) {
+                capabilities = Capabilities.of(getPrincePath(), version, capabilityResolver);
+                // Job fields depend on what the engine supports.
+                configChanged();
+            }
         } else if (chunk.getTag().equals("err")) {
-            throw new IOException("error: " + chunk.getString());
+            throw withStderr(new IOException("error: " + chunk.getString()));
         } else {
-            throw new IOException("unknown chunk: " + chunk.getTag());
+            throw withStderr(new IOException("unknown chunk: " + chunk.getTag()));
         }
     }
 
     /**
-     * Stop the Prince control process.
+     * Stop the Prince control process, waiting up to 10 seconds as described
+     * in {@link #stop(long)}.
      * @throws IOException If an I/O error occurs.
      */
     public void stop() throws IOException {
+        stop(STOP_TIMEOUT);
+    }
+
+    /**
+     * Stop the Prince control process gracefully. Conversions are no longer
+     * accepted, and a conversion that is running on another thread is allowed
+     * to finish. The process is then asked to end and waited for, and is
+     * forcibly terminated if it has not exited when the timeout expires.
+     * @param timeout The timeout in milliseconds. Value must not be negative.
+     * @return true if the process ended within the timeout, false if it had
+     *         to be forcibly terminated.
+     * @throws IOException If the thread is interrupted while waiting.
+     */
+    public boolean stop(long timeout) throws IOException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("invalid timeout value (must be >= 0)");
+        }
         if (process == null) {
             throw new RuntimeException("control process has not been started");
         }
 
+        stopping = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        boolean locked = false;
+        try {
+            locked = jobLock.tryLock(timeout, TimeUnit.MILLISECONDS);
+            // A process in the middle of a job would not read the end chunk.
+            boolean ended = locked && !isBroken() && sendEnd()
+                    && process.waitFor(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (!ended) {
+                process.destroyForcibly();
+            }
+            return ended;
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while stopping control process");
+        } finally {
+            closeQuietly(process.getOutputStream());
+            closeQuietly(process.getInputStream());
+            closeQuietly(process.getErrorStream());
+            removeShutdownHook();
+            if (locked) {
+                jobLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stop the control process with {@link #stop(long)} when the JVM shuts
+     * down, if it is still running. The hook is removed when the process is
+     * stopped.
+     * @param timeout The timeout in milliseconds. Value must not be negative.
+     */
+    public synchronized void addShutdownHook(long timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("invalid timeout value (must be >= 0)");
+        }
+        removeShutdownHook();
+        shutdownHook = new Thread(() -> {
+            try {
+                if (process != null && process.isAlive()) {
+                    stop(timeout);
+                }
+            } catch (IOException | RuntimeException ignored) {
+                // The JVM is exiting regardless.
+            }
+        }, "prince-control-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    private synchronized void removeShutdownHook() {
+        if (shutdownHook == null || shutdownHook == Thread.currentThread()) {
+            return;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignored) {
+            // The JVM is already shutting down.
+        }
+        shutdownHook = null;
+    }
+
+    private boolean sendEnd() {
         try (OutputStream toPrince = process.getOutputStream()) {
             Chunk.writeChunk(toPrince, "end", "");
+            return true;
+        } catch (IOException e) {
+            // The process has already exited.
+            return false;
         }
-        process.getInputStream().close();
+    }
 
-        process.destroy();
+    private static void closeQuietly(Closeable c) {
+        try {
+            c.close();
+        } catch (IOException ignored) {
+            // Nothing more can be done for a process that is going away.
+        }
+    }
+
+    /**
+     * Get the most recent output of the control process on stderr, which is
+     * read continuously so that the process never blocks writing to it. It is
+     * also attached to the exceptions thrown by {@code convert} as a
+     * suppressed exception, and each line is passed to the events handler,
+     * from a background thread.
+     * @return The output, or an empty string if there is none.
+     */
+    public String getStderrTail() {
+        return stderrDrainer != null ? stderrDrainer.getTail() : "";
+    }
+
+    /**
+     * Set the number of characters of stderr output kept by
+     * {@link #getStderrTail()}. Only takes effect when the control process
+     * is started. Default value is {@code 16384}.
+     * @param stderrBufferSize The buffer size. Value must be greater than 0.
+     */
+    public void setStderrBufferSize(int stderrBufferSize) {
+        if (stderrBufferSize < 1) {
+            throw new IllegalArgumentException("invalid stderrBufferSize value (must be > 0)");
+        }
+        this.stderrBufferSize = stderrBufferSize;
+    }
+
+    /**
+     * Set how to find the job features supported by the engine, from the
+     * version it reports when the control process is started. Jobs that use
+     * an unsupported feature are then rejected with a
+     * {@code RuntimeException} before they are sent, which leaves the process
+     * usable, and unused optional fields are left out of the job. The result
+     * is cached per Prince executable, and shared by every control process
+     * started for it with the same resolver. Only takes effect when the
+     * control process is started. Default value is {@code null}, which sends
+     * every field to the engine and leaves it to reject any it does not
+     * support.
+     * @param capabilityResolver Gets the supported features from the version
+     *                           string.
+     */
+    public void setCapabilityResolver(Function<String, Set<JobFeature>> capabilityResolver) {
+        this.capabilityResolver = capabilityResolver;
+    }
+
+    /**
+     * Get the job features supported by the running engine, as found by the
+     * {@linkplain #setCapabilityResolver(Function) capability resolver}.
+     * @return The supported features, or null if the control process has not
+     *         been started with a capability resolver.
+     */
+    public Set<JobFeature> getSupportedFeatures() {
+        return capabilities != null ? capabilities.getFeatures() : null;
+    }
+
+    /**
+     * Attach the most recent stderr output to an exception.
+     */
+    private IOException withStderr(IOException e) {
+        if (stderrDrainer == null) {
+            return e;
+        }
+        try {
+            // A crashing process may still be writing its last words.
+            if (isBroken() && process.waitFor(100, TimeUnit.MILLISECONDS)) {
+                stderrDrainer.awaitEnd(100);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+
+        String tail = stderrDrainer.getTail();
+        if (!tail.isEmpty()) {
+            e.addSuppressed(new IOException("stderr of control process:\n" + tail));
+        }
+        return e;
+    }
+
+    /**
+     * Whether the control process can no longer be used, because it has
+     * exited or a job was abandoned before its response was read in full.
+     */
+    boolean isBroken() {
+        return inJob || process == null || !process.isAlive();
     }
 
-    private String getJobJson() {
+    /**
+     * Forcibly terminate the control process, such as when a job has hung.
+     * This may be called from any thread.
+     */
+    void kill() {
+        Process p = process;
+        if (p != null) {
+            p.destroyForcibly();
+        }
+    }
+
+    Json getJobJson() {
+        if (jobTemplate == null) {
+            buildJobTemplate();
+        }
+
+        Json json = jobJson.reset();
+        json.raw(jobTemplate, 0, jobTemplateSrcPos);
+        inputPaths.forEach(json::value);
+        json.raw(jobTemplate, jobTemplateSrcPos, jobTemplateCountPos - jobTemplateSrcPos);
+        json.value(resources.size() + jobResources.size());
+        json.raw(jobTemplate, jobTemplateCountPos, jobTemplate.length - jobTemplateCountPos);
+
+        return json;
+    }
+
+    @Override
+    protected void configChanged() {
+        jobTemplate = null;
+    }
+
+    private void buildJobTemplate() {
         Json json = new Json();
 
         json.beginObj();
@@ -176,7 +751,7 @@ public class PrinceControl extends AbstractPrince {
         json.beginObj("input");
 
         json.beginList("src");
-        inputPaths.forEach(json::value);
+        jobTemplateSrcPos = json.length();
         json.endList();
 
         if (inputType != null) { json.field("type", inputType.toString()); }
@@ -195,7 +770,7 @@ public class PrinceControl extends AbstractPrince {
         json.field("author-style", !noAuthorStyle);
         json.field("javascript", javaScript);
         if (maxPasses > 0) { json.field("max-passes", maxPasses); }
-        json.field("iframes", iframes);
+        if (check(JobFeature.IFRAMES, iframes)) { json.field("iframes", iframes); }
         json.field("xinclude", xInclude);
         json.field("xml-external-entities", xmlExternalEntities);
         json.endObj();
@@ -225,11 +800,13 @@ public class PrinceControl extends AbstractPrince {
         if (pdfProfile != null) { json.field("pdf-profile", pdfProfile.toString()); }
         if (pdfOutputIntent != null) { json.field("pdf-output-intent", pdfOutputIntent); }
         if (pdfScript != null) {
+            check(JobFeature.PDF_SCRIPT, true);
             json.beginObj("pdf-script");
             json.field("url", pdfScript);
             json.endObj();
         }
         if (!pdfEventScripts.isEmpty()) {
+            check(JobFeature.PDF_EVENT_SCRIPTS, true);
             json.beginObj("pdf-event-scripts");
             pdfEventScripts.forEach((k, v) -> {
                 json.beginObj(k.toString());
@@ -244,7 +821,7 @@ public class PrinceControl extends AbstractPrince {
         if (pdfLang != null) { json.field("pdf-lang", pdfLang); }
         if (xmp != null) { json.field("pdf-xmp", xmp); }
         json.field("tagged-pdf", taggedPdf);
-        json.field("pdf-forms", pdfForms);
+        if (check(JobFeature.PDF_FORMS, pdfForms)) { json.field("pdf-forms", pdfForms); }
 
         json.beginList("attach");
         for (FileAttachment fa : fileAttachments) {
@@ -266,11 +843,21 @@ public class PrinceControl extends AbstractPrince {
         if (pdfCreator != null) { json.field("creator", pdfCreator); }
         json.endObj();
 
-        json.field("job-resource-count", resources.size());
+        json.field("job-resource-count");
+        jobTemplateCountPos = json.length();
 
         json.endObj();
 
-        return json.toString();
+        jobTemplate = json.toByteArray();
+    }
+
+    /**
+     * Whether a job field may be sent to the running engine. Fields that are
+     * used but not supported fail here, before the job is sent, rather than
+     * with an error from Prince.
+     */
+    private boolean check(JobFeature feature, boolean used) {
+        return capabilities == null || capabilities.check(feature, used);
     }
 
     /**
@@ -281,11 +868,62 @@ public class PrinceControl extends AbstractPrince {
         return version;
     }
 
+    /**
+     * Set the largest PDF, in bytes, that is buffered in memory when it is
+     * received from the control process. Larger PDFs are written to a
+     * temporary file instead, capping the heap used per conversion. The same
+     * threshold applies to documents passed to
+     * {@link #convert(IOConsumer, OutputStream)}. Default value is unlimited,
+     * although PDFs over 2 GB are always written to a temporary file.
+     * @param chunkMemoryThreshold The threshold in bytes. Value must not be negative.
+     */
+    public void setChunkMemoryThreshold(long chunkMemoryThreshold) {
+        if (chunkMemoryThreshold < 0) {
+            throw new IllegalArgumentException("invalid chunkMemoryThreshold value (must be >= 0)");
+        }
+        this.chunkMemoryThreshold = chunkMemoryThreshold;
+    }
+
+    /**
+     * Set the directory for temporary files created for PDFs and documents
+     * over the threshold set by {@link #setChunkMemoryThreshold(long)}. A memory-backed
+     * file system such as {@code /dev/shm} avoids disk I/O. Default value is
+     * the system temporary-file directory.
+     * @param chunkSpillDirectory The directory for temporary files.
+     */
+    public void setChunkSpillDirectory(Path chunkSpillDirectory) {
+        this.chunkSpillDirectory = chunkSpillDirectory;
+    }
+
     /**
      * See {@link #addScript(String)}.
      * @param script The script to run.
      */
     public void addScript(byte[] script) {
+        addScript(JobResource.of(script));
+    }
+
+    /**
+     * See {@link #addScript(String)}. The file is read when each job is
+     * sent, rather than being held in memory.
+     * @param script The path of the script to run.
+     */
+    public void addScript(Path script) {
+        addScript(JobResource.of(script));
+    }
+
+    /**
+     * See {@link #addScript(String)}. The supplier is called, and the stream
+     * it returns read, each time a job is sent.
+     * @param script Supplies the script to run. It may throw
+     *               {@link java.io.UncheckedIOException}.
+     * @param length The exact length of the script in bytes.
+     */
+    public void addScript(Supplier<InputStream> script, long length) {
+        addScript(JobResource.of(script, length));
+    }
+
+    private void addScript(JobResource script) {
         resources.add(script);
         super.addScript("job-resource:" + (resources.size() - 1));
     }
@@ -295,6 +933,30 @@ public class PrinceControl extends AbstractPrince {
      * @param styleSheet The stylesheet to apply.
      */
     public void addStyleSheet(byte[] styleSheet) {
+        addStyleSheet(JobResource.of(styleSheet));
+    }
+
+    /**
+     * See {@link #addStyleSheet(String)}. The file is read when each job is
+     * sent, rather than being held in memory.
+     * @param styleSheet The path of the stylesheet to apply.
+     */
+    public void addStyleSheet(Path styleSheet) {
+        addStyleSheet(JobResource.of(styleSheet));
+    }
+
+    /**
+     * See {@link #addStyleSheet(String)}. The supplier is called, and the
+     * stream it returns read, each time a job is sent.
+     * @param styleSheet Supplies the stylesheet to apply. It may throw
+     *                   {@link java.io.UncheckedIOException}.
+     * @param length The exact length of the stylesheet in bytes.
+     */
+    public void addStyleSheet(Supplier<InputStream> styleSheet, long length) {
+        addStyleSheet(JobResource.of(styleSheet, length));
+    }
+
+    private void addStyleSheet(JobResource styleSheet) {
         resources.add(styleSheet);
         super.addStyleSheet("job-resource:" + (resources.size() - 1));
     }
@@ -304,6 +966,30 @@ public class PrinceControl extends AbstractPrince {
      * @param pdfScript The AcroJS script.
      */
     public void setPdfScript(byte[] pdfScript) {
+        setPdfScript(JobResource.of(pdfScript));
+    }
+
+    /**
+     * See {@link #setPdfScript(String)}. The file is read when each job is
+     * sent, rather than being held in memory.
+     * @param pdfScript The path of the AcroJS script.
+     */
+    public void setPdfScript(Path pdfScript) {
+        setPdfScript(JobResource.of(pdfScript));
+    }
+
+    /**
+     * See {@link #setPdfScript(String)}. The supplier is called, and the
+     * stream it returns read, each time a job is sent.
+     * @param pdfScript Supplies the AcroJS script. It may throw
+     *                  {@link java.io.UncheckedIOException}.
+     * @param length The exact length of the script in bytes.
+     */
+    public void setPdfScript(Supplier<InputStream> pdfScript, long length) {
+        setPdfScript(JobResource.of(pdfScript, length));
+    }
+
+    private void setPdfScript(JobResource pdfScript) {
         resources.add(pdfScript);
         super.setPdfScript("job-resource:" + (resources.size() - 1));
     }
@@ -314,6 +1000,32 @@ public class PrinceControl extends AbstractPrince {
      * @param pdfScript The AcroJS script.
      */
     public void addPdfEventScript(PdfEvent pdfEvent, byte[] pdfScript) {
+        addPdfEventScript(pdfEvent, JobResource.of(pdfScript));
+    }
+
+    /**
+     * See {@link #addPdfEventScript(PdfEvent, String)}. The file is read when
+     * each job is sent, rather than being held in memory.
+     * @param pdfEvent The PDF event.
+     * @param pdfScript The path of the AcroJS script.
+     */
+    public void addPdfEventScript(PdfEvent pdfEvent, Path pdfScript) {
+        addPdfEventScript(pdfEvent, JobResource.of(pdfScript));
+    }
+
+    /**
+     * See {@link #addPdfEventScript(PdfEvent, String)}. The supplier is
+     * called, and the stream it returns read, each time a job is sent.
+     * @param pdfEvent The PDF event.
+     * @param pdfScript Supplies the AcroJS script. It may throw
+     *                  {@link java.io.UncheckedIOException}.
+     * @param length The exact length of the script in bytes.
+     */
+    public void addPdfEventScript(PdfEvent pdfEvent, Supplier<InputStream> pdfScript, long length) {
+        addPdfEventScript(pdfEvent, JobResource.of(pdfScript, length));
+    }
+
+    private void addPdfEventScript(PdfEvent pdfEvent, JobResource pdfScript) {
         resources.add(pdfScript);
         super.addPdfEventScript(pdfEvent, "job-resource:" + (resources.size() - 1));
     }
@@ -325,16 +1037,109 @@ public class PrinceControl extends AbstractPrince {
      * @param description The file's description.
      */
     public void addFileAttachment(byte[] attachment, String filename, String description) {
+        addFileAttachment(JobResource.of(attachment), filename, description);
+    }
+
+    /**
+     * See {@link #addFileAttachment(String)}. The file is read when each job
+     * is sent, rather than being held in memory.
+     * @param attachment The path of the file to attach.
+     * @param filename The file name.
+     * @param description The file's description.
+     */
+    public void addFileAttachment(Path attachment, String filename, String description) {
+        addFileAttachment(JobResource.of(attachment), filename, description);
+    }
+
+    /**
+     * See {@link #addFileAttachment(String)}. The supplier is called, and the
+     * stream it returns read, each time a job is sent.
+     * @param attachment Supplies the file to attach. It may throw
+     *                   {@link java.io.UncheckedIOException}.
+     * @param length The exact length of the file in bytes.
+     * @param filename The file name.
+     * @param description The file's description.
+     */
+    public void addFileAttachment(Supplier<InputStream> attachment, long length, String filename,
+                                  String description) {
+        addFileAttachment(JobResource.of(attachment, length), filename, description);
+    }
+
+    private void addFileAttachment(JobResource attachment, String filename, String description) {
         resources.add(attachment);
         super.fileAttachments.add(new FileAttachment(
                 "job-resource:" + (resources.size() - 1),
                 filename,
                 description
         ));
+        configChanged();
+    }
+
+    /**
+     * Buffer a document whose length is not known up front, in memory up to
+     * {@code memoryThreshold} bytes or the memory budget, and in a temporary
+     * file beyond that.
+     */
+    private JobResource produce(long memoryThreshold, IOConsumer<OutputStream> producer) throws IOException {
+        SpillOutputStream buffer = null;
+        try {
+            admit();
+            buffer = new SpillOutputStream(memoryThreshold, chunkSpillDirectory, reservation);
+            producer.accept(buffer);
+            buffer.close();
+        } catch (IOException | RuntimeException e) {
+            if (buffer != null) {
+                buffer.discard();
+            }
+            releaseReservation();
+            throw e;
+        }
+        return buffer.toJobResource();
+    }
+
+    /**
+     * Reserve the estimated footprint of the current job against the memory
+     * budget, unless it has already been reserved.
+     */
+    private void admit() throws IOException {
+        if (memoryBudget == null || reservation != null) {
+            return;
+        }
+        reservation = reserve(estimate());
+    }
+
+    private long estimate() {
+        long estimate = 0;
+        for (JobResource r : resources) {
+            estimate += r.heapSize();
+        }
+        for (JobResource r : jobResources) {
+            estimate += r.heapSize();
+        }
+        return estimate;
+    }
+
+    private void releaseReservation() {
+        if (reservation != null) {
+            reservation.close();
+            reservation = null;
+        }
+    }
+
+    /**
+     * Adds the inputs of a job.
+     */
+    @FunctionalInterface
+    private interface JobInputs {
+        void add() throws IOException;
     }
 
     private void addResource(byte[] resource) {
-        resources.add(resource);
-        inputPaths.add("job-resource:" + (resources.size() - 1));
+        addResource(JobResource.of(resource));
+    }
+
+    private void addResource(JobResource resource) {
+        jobResources.add(resource);
+        inputPaths.add("job-resource:" + (resources.size() + jobResources.size() - 1));
     }
 }
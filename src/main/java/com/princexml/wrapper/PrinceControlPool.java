@@ -0,0 +1,827 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A pool of warm {@link PrinceControl} processes that grows and shrinks with
+ * demand, between a minimum and a maximum size.
+ * <p>
+ * The pool grows by one process whenever a task waits longer than the target
+ * queue wait for a free process, and shrinks by stopping processes that have
+ * been idle for longer than the idle timeout, down to the minimum size.
+ * Processes are started on a background thread, so a growing pool never
+ * blocks a task that could be served by a process that becomes free in the
+ * meantime.
+ * <p>
+ * Processes are created by a factory, which returns a configured
+ * {@code PrinceControl} that has not been started, e.g.
+ * <pre>
+ * PrinceControlPool pool = new PrinceControlPool(() -&gt; {
+ *     PrinceControl control = new PrinceControl("/usr/bin/prince");
+ *     control.setJavaScript(true);
+ *     return control;
+ * }, 1, 8);
+ * boolean success = pool.execute(control -&gt; control.convert("doc.html", output));
+ * </pre>
+ * Tasks should not change options that are meant to apply to every process.
+ * A process is stopped and replaced if its task leaves it unusable, such as
+ * when it crashes or a job is abandoned half-way.
+ * <p>
+ * Processes can also be checked while they are idle, with
+ * {@link #setProbeInterval(long)}, so that a process that is alive but has
+ * become slow or unresponsive is replaced before it is given a task. Each
+ * process is compared with its own earlier probes, so a process is only
+ * replaced when it gets slower, not because the documents are slow.
+ * <p>
+ * {@link #close()} stops the pool without waiting for running tasks, while
+ * {@link #shutdown(long)} waits for them up to a timeout, and can be run
+ * when the JVM exits with {@link #addShutdownHook(long)}.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class PrinceControlPool implements Closeable {
+    private static final long MAINTENANCE_INTERVAL = 1000;
+    // A regression must also be this many milliseconds, so that the jitter
+    // of probes that take a few milliseconds does not evict processes.
+    private static final long PROBE_REGRESSION_MARGIN = 50;
+    // How long a process that is discarded may take to exit, in milliseconds.
+    private static final long STOP_TIMEOUT = 10000;
+
+    /**
+     * A task that uses a control process.
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    public interface Task<T> {
+        /**
+         * Run the task.
+         * @param control The control process, which has been started.
+         * @return The result of the task.
+         * @throws IOException If an I/O error occurs.
+         */
+        T run(PrinceControl control) throws IOException;
+    }
+
+    /**
+     * Runs a document that cannot run on the pool, such as on a one-shot
+     * {@link Prince} process.
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    public interface Fallback<T> {
+        /**
+         * Run the document.
+         * @return The result.
+         * @throws IOException If an I/O error occurs.
+         */
+        T run() throws IOException;
+    }
+
+    /**
+     * Receives the scaling decisions of a pool.
+     */
+    public interface Listener {
+        /**
+         * This method will be called when the pool decides to start a process.
+         * @param size The size of the pool, including the new process.
+         * @param reason The reason for the decision.
+         */
+        void onScaleUp(int size, String reason);
+
+        /**
+         * This method will be called when the pool stops a process.
+         * @param size The size of the pool, excluding the stopped process.
+         * @param reason The reason for the decision.
+         */
+        void onScaleDown(int size, String reason);
+    }
+
+    private final Supplier<PrinceControl> factory;
+    private final int minSize;
+    private final int maxSize;
+    private volatile long targetQueueWait = 100;
+    private volatile long idleTimeout = 300000;
+    private volatile long jobTimeout;
+    private volatile PoisonQuarantine quarantine;
+    private volatile Listener listener;
+
+    // Most recently used first, so that surplus processes stay idle at the
+    // end and time out.
+    private final LinkedBlockingDeque<Member> idle = new LinkedBlockingDeque<>();
+    private final Set<Member> busy = ConcurrentHashMap.newKeySet();
+    private final ExecutorService starter;
+    private final ScheduledExecutorService scaler;
+    // Separate from the scaler, which can block while stopping processes.
+    private final ScheduledExecutorService timer;
+    private final AtomicInteger waitingCount = new AtomicInteger();
+    private final AtomicLong scaleUpCount = new AtomicLong();
+    private final AtomicLong scaleDownCount = new AtomicLong();
+    private volatile long probeInterval;
+    private volatile long probeTimeout = 5000;
+    private volatile double probeRegression = 3;
+    private final AtomicLong probeCount = new AtomicLong();
+    private final AtomicLong probeEvictionCount = new AtomicLong();
+    // Guarded by this.
+    private int size;
+    private int startingCount;
+    // Discarded processes that have not exited yet.
+    private int stoppingCount;
+    private boolean stoppedGracefully = true;
+    private IOException startFailure;
+    private double probeLatency = Double.NaN;
+    private Thread shutdownHook;
+    private volatile boolean closed;
+    // Set by shutdown(long), so that processes are stopped by its deadline.
+    private volatile boolean shuttingDown;
+    private volatile long shutdownDeadline;
+
+    /**
+     * Constructor for {@code PrinceControlPool}. Processes up to the minimum
+     * size are started in the background.
+     * @param factory Creates the control processes, which must not have been
+     *                started.
+     * @param minSize The minimum number of processes. Value must not be negative.
+     * @param maxSize The maximum number of processes. Value must be greater
+     *                than 0, and not less than {@code minSize}.
+     */
+    public PrinceControlPool(Supplier<PrinceControl> factory, int minSize, int maxSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("invalid minSize value (must be >= 0)");
+        }
+        if (maxSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("invalid maxSize value (must be > 0 and >= minSize)");
+        }
+        this.factory = factory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+
+        this.starter = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "prince-pool-start");
+            t.setDaemon(true);
+            return t;
+        });
+        this.scaler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "prince-pool-scaler");
+            t.setDaemon(true);
+            return t;
+        });
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "prince-pool-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        scaler.scheduleWithFixedDelay(this::maintain, 0, MAINTENANCE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Set how long a task may wait for a free process before the pool grows.
+     * Default value is {@code 100}.
+     * @param targetQueueWait The target queue wait in milliseconds. Value must
+     *                        be greater than 0.
+     */
+    public void setTargetQueueWait(long targetQueueWait) {
+        if (targetQueueWait < 1) {
+            throw new IllegalArgumentException("invalid targetQueueWait value (must be > 0)");
+        }
+        this.targetQueueWait = targetQueueWait;
+    }
+
+    /**
+     * Set how long a process may be idle before it is stopped, while the pool
+     * is larger than its minimum size. Default value is {@code 300000}.
+     * @param idleTimeout The idle timeout in milliseconds. Value must not be
+     *                    negative.
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("invalid idleTimeout value (must be >= 0)");
+        }
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Set how long a task may use a process before the process is killed, so
+     * that a document that hangs Prince cannot hold it forever. The task then
+     * throws an {@code IOException}. Default value is {@code 0} (no limit).
+     * @param jobTimeout The job timeout in milliseconds. Value must not be
+     *                   negative.
+     */
+    public void setJobTimeout(long jobTimeout) {
+        if (jobTimeout < 0) {
+            throw new IllegalArgumentException("invalid jobTimeout value (must be >= 0)");
+        }
+        this.jobTimeout = jobTimeout;
+    }
+
+    /**
+     * Set how long a process may be idle before it is probed with a tiny
+     * document, and between probes while it stays idle. Default value is
+     * {@code 0} (no probes).
+     * @param probeInterval The probe interval in milliseconds. Value must not
+     *                      be negative. Probes are made by a maintenance task
+     *                      that runs once a second, so shorter intervals are
+     *                      rounded up to that.
+     */
+    public void setProbeInterval(long probeInterval) {
+        if (probeInterval < 0) {
+            throw new IllegalArgumentException("invalid probeInterval value (must be >= 0)");
+        }
+        this.probeInterval = probeInterval;
+    }
+
+    /**
+     * Set how many times slower than the process's usual probe time a probe
+     * may be before the process is stopped and replaced. The usual time is an
+     * exponentially weighted moving average of the earlier probes of the same
+     * process. Default value is {@code 3}.
+     * @param probeRegression The factor. Value must be greater than 1.
+     */
+    public void setProbeRegression(double probeRegression) {
+        if (!(probeRegression > 1)) {
+            throw new IllegalArgumentException("invalid probeRegression value (must be > 1)");
+        }
+        this.probeRegression = probeRegression;
+    }
+
+    /**
+     * Set how long a probe may take at most, whatever the usual probe time of
+     * the process. A process whose probe takes this long is killed and
+     * replaced. Default value is {@code 5000}.
+     * @param probeTimeout The probe timeout in milliseconds. Value must be
+     *                     greater than 0.
+     */
+    public void setProbeTimeout(long probeTimeout) {
+        if (probeTimeout < 1) {
+            throw new IllegalArgumentException("invalid probeTimeout value (must be > 0)");
+        }
+        this.probeTimeout = probeTimeout;
+    }
+
+    /**
+     * Record the documents that crash or hang processes in
+     * {@code quarantine}, see {@link #execute(String, Task, Fallback)}.
+     * Default value is {@code null}.
+     * @param quarantine The quarantine.
+     */
+    public void setQuarantine(PoisonQuarantine quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * Set a listener for scaling decisions. Default value is {@code null}.
+     * @param listener The listener, which is called on pool threads.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * The number of processes, including those being started.
+     * @return The size.
+     */
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * The number of processes being started.
+     * @return The starting count.
+     */
+    public synchronized int getStartingCount() {
+        return startingCount;
+    }
+
+    /**
+     * The number of idle processes.
+     * @return The idle count.
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * The number of tasks waiting for a free process.
+     * @return The waiting count.
+     */
+    public int getWaitingCount() {
+        return waitingCount.get();
+    }
+
+    /**
+     * The number of times the pool decided to start a process.
+     * @return The scale-up count.
+     */
+    public long getScaleUpCount() {
+        return scaleUpCount.get();
+    }
+
+    /**
+     * The number of times the pool stopped a process.
+     * @return The scale-down count.
+     */
+    public long getScaleDownCount() {
+        return scaleDownCount.get();
+    }
+
+    /**
+     * The number of probes of idle processes.
+     * @return The probe count.
+     */
+    public long getProbeCount() {
+        return probeCount.get();
+    }
+
+    /**
+     * The number of processes stopped because a probe failed, timed out or
+     * regressed.
+     * @return The probe eviction count.
+     */
+    public long getProbeEvictionCount() {
+        return probeEvictionCount.get();
+    }
+
+    /**
+     * The exponentially weighted moving average of the time taken by probes
+     * of all processes.
+     * @return The probe latency in milliseconds, or NaN if there have been
+     *         no probes.
+     */
+    public synchronized double getProbeLatency() {
+        return probeLatency;
+    }
+
+    /**
+     * Run a task on a free process, waiting for one if needed.
+     * @param task The task.
+     * @param <T> The type of the result.
+     * @return The result of the task.
+     * @throws IOException If a process cannot be started, or the task throws.
+     */
+    public <T> T execute(Task<T> task) throws IOException {
+        return execute(null, task, null);
+    }
+
+    /**
+     * Run a task for a document on a free process, unless the document is
+     * quarantined because it has crashed or hung processes before. Failures
+     * that leave the process unusable count against the document.
+     * @param key The key of the document, see
+     *            {@link PoisonQuarantine#fingerprint(byte[])}.
+     * @param task The task.
+     * @param fallback Runs a quarantined document instead, or null to reject it.
+     * @param <T> The type of the result.
+     * @return The result of the task or the fallback.
+     * @throws IOException If the document is rejected, a process cannot be
+     *                     started, or the task throws.
+     */
+    public <T> T execute(String key, Task<T> task, Fallback<T> fallback) throws IOException {
+        PoisonQuarantine q = key != null ? quarantine : null;
+        if (q != null && q.isQuarantined(key)) {
+            if (fallback == null) {
+                throw new IOException("document " + key + " is quarantined");
+            }
+            return fallback.run();
+        }
+
+        Member member = acquire();
+        busy.add(member);
+        long timeout = jobTimeout;
+        Watchdog watchdog = timeout > 0 ? new Watchdog(member.control, timeout) : null;
+        boolean completed = false;
+
+        try {
+            T result = task.run(member.control);
+            completed = true;
+            return result;
+        } catch (IOException e) {
+            if (watchdog != null && watchdog.complete()) {
+                throw new IOException("job timed out after " + timeout + " ms", e);
+            }
+            throw e;
+        } finally {
+            boolean timedOut = watchdog != null && watchdog.complete();
+            busy.remove(member);
+            if (timedOut || member.control.isBroken()) {
+                // Only a task that failed counts against the document.
+                if (q != null && !completed) {
+                    q.recordFailure(key);
+                }
+                discard(member, timedOut ? "job timed out" : "process failed");
+            } else {
+                release(member);
+            }
+        }
+    }
+
+    /**
+     * Stop all processes. Tasks that are running are allowed to finish, and
+     * their processes are then stopped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scaler.shutdownNow();
+        // Watchdogs of running tasks still fire after shutdown.
+        timer.shutdown();
+        starter.shutdown();
+        removeShutdownHook();
+
+        Member member;
+        while ((member = idle.pollFirst()) != null) {
+            discard(member, "pool closed");
+        }
+    }
+
+    /**
+     * Stop the pool gracefully. New tasks are rejected, and tasks waiting for
+     * a process fail. Idle processes are stopped at once, and running tasks
+     * are allowed to finish, all within the timeout. Processes still running
+     * at the deadline are forcibly terminated, so that their tasks fail.
+     * @param timeout The timeout in milliseconds. Value must not be negative.
+     * @return true if every running task finished, and every process exited,
+     *         within the timeout.
+     * @throws InterruptedIOException If the thread is interrupted while waiting.
+     */
+    public boolean shutdown(long timeout) throws InterruptedIOException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("invalid timeout value (must be >= 0)");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        shutdownDeadline = deadline;
+        shuttingDown = true;
+        close();
+
+        synchronized (this) {
+            try {
+                long remaining;
+                while ((size > 0 || stoppingCount > 0) && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while shutting down pool");
+            }
+            if (size == 0 && stoppingCount == 0) {
+                return stoppedGracefully;
+            }
+        }
+
+        for (Member member : busy) {
+            member.control.kill();
+        }
+        return false;
+    }
+
+    /**
+     * Run {@link #shutdown(long)} when the JVM shuts down, so that no
+     * processes outlive it. The hook is removed when the pool is closed.
+     * @param timeout The timeout in milliseconds. Value must not be negative.
+     */
+    public synchronized void addShutdownHook(long timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("invalid timeout value (must be >= 0)");
+        }
+        ensureOpen();
+        removeShutdownHook();
+        shutdownHook = new Thread(() -> {
+            try {
+                shutdown(timeout);
+            } catch (IOException ignored) {
+                // The JVM is exiting regardless.
+            }
+        }, "prince-pool-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    private synchronized void removeShutdownHook() {
+        if (shutdownHook == null || shutdownHook == Thread.currentThread()) {
+            return;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignored) {
+            // The JVM is already shutting down.
+        }
+        shutdownHook = null;
+    }
+
+    private Member acquire() throws IOException {
+        ensureOpen();
+        Member member = idle.pollFirst();
+        if (member != null) {
+            return member;
+        }
+
+        waitingCount.incrementAndGet();
+        try {
+            if (getSize() == 0) {
+                grow("no processes");
+            }
+            while ((member = idle.pollFirst(targetQueueWait, TimeUnit.MILLISECONDS)) == null) {
+                ensureOpen();
+                synchronized (this) {
+                    if (size == 0 && startFailure != null) {
+                        throw new IOException("failed to start control process", startFailure);
+                    }
+                }
+                grow("queue wait exceeded " + targetQueueWait + " ms");
+            }
+            return member;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a control process");
+        } finally {
+            waitingCount.decrementAndGet();
+        }
+    }
+
+    private void release(Member member) {
+        member.idleSince = System.nanoTime();
+        idle.offerFirst(member);
+        if (closed && idle.remove(member)) {
+            discard(member, "pool closed");
+        }
+    }
+
+    private void discard(Member member, String reason) {
+        int newSize;
+        synchronized (this) {
+            newSize = --size;
+            stoppingCount++;
+        }
+        scaleDownCount.incrementAndGet();
+        boolean graceful = false;
+        try {
+            graceful = member.control.stop(stopTimeout());
+        } catch (IOException | RuntimeException ignored) {
+            // The process is destroyed regardless.
+        } finally {
+            synchronized (this) {
+                stoppingCount--;
+                if (!graceful && shuttingDown) {
+                    stoppedGracefully = false;
+                }
+                notifyAll();
+            }
+        }
+
+        Listener l = listener;
+        if (l != null) {
+            l.onScaleDown(newSize, reason);
+        }
+    }
+
+    /**
+     * How long a discarded process may take to exit, which is shortened to
+     * what is left of the timeout once the pool is shutting down.
+     */
+    private long stopTimeout() {
+        if (!shuttingDown) {
+            return STOP_TIMEOUT;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(shutdownDeadline - System.nanoTime());
+        return Math.min(Math.max(remaining, 0), STOP_TIMEOUT);
+    }
+
+    /**
+     * Start a process in the background for a waiting task, unless the pool
+     * is at its maximum size or every waiting task already has a process
+     * being started for it.
+     */
+    private void grow(String reason) {
+        grow(reason, true);
+    }
+
+    private void grow(String reason, boolean forWaiting) {
+        int newSize;
+        synchronized (this) {
+            if (closed || size >= maxSize || (forWaiting && startingCount >= Math.max(waitingCount.get(), 1))) {
+                return;
+            }
+            newSize = ++size;
+            startingCount++;
+        }
+        scaleUpCount.incrementAndGet();
+
+        Listener l = listener;
+        if (l != null) {
+            l.onScaleUp(newSize, reason);
+        }
+
+        try {
+            starter.execute(this::startProcess);
+        } catch (RuntimeException e) {
+            // Closed concurrently.
+            synchronized (this) {
+                size--;
+                startingCount--;
+                notifyAll();
+            }
+        }
+    }
+
+    private void startProcess() {
+        Member member;
+        try {
+            PrinceControl control = factory.get();
+            control.start();
+            member = new Member(control);
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                size--;
+                startingCount--;
+                startFailure = e instanceof IOException ? (IOException) e : new IOException(e);
+                notifyAll();
+            }
+            return;
+        }
+
+        synchronized (this) {
+            startingCount--;
+            startFailure = null;
+        }
+        release(member);
+    }
+
+    private void maintain() {
+        int deficit;
+        synchronized (this) {
+            deficit = minSize - size;
+        }
+        for (int i = 0; i < deficit; i++) {
+            grow("below minimum size", false);
+        }
+
+        long expiry = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        Member member;
+        while ((member = idle.pollLast()) != null) {
+            boolean surplus;
+            synchronized (this) {
+                surplus = size > minSize;
+            }
+            if (!surplus || member.idleSince - expiry > 0) {
+                idle.offerLast(member);
+                break;
+            }
+            discard(member, "idle for " + idleTimeout + " ms");
+        }
+
+        long interval = probeInterval;
+        if (interval > 0) {
+            long due = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(interval);
+            for (Member m : idle) {
+                long last = m.probedAt - m.idleSince > 0 ? m.probedAt : m.idleSince;
+                if (last - due <= 0 && idle.remove(m)) {
+                    busy.add(m);
+                    try {
+                        starter.execute(() -> probe(m));
+                    } catch (RuntimeException e) {
+                        // Closed concurrently.
+                        busy.remove(m);
+                        restore(m);
+                    }
+                }
+            }
+        }
+    }
+
+    private void probe(Member member) {
+        long timeout = probeTimeout;
+        // Started first, so that a probe killed by the watchdog is timed
+        // as taking at least the timeout.
+        long start = System.nanoTime();
+        Watchdog watchdog = new Watchdog(member.control, timeout);
+
+        boolean ran = true;
+        boolean success;
+        try {
+            ran = member.control.probe();
+            success = true;
+        } catch (IOException | RuntimeException e) {
+            success = false;
+        }
+        long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        boolean timedOut = watchdog.complete();
+        busy.remove(member);
+        if (!ran) {
+            // The memory budget is busy, so try again later.
+            restore(member);
+            return;
+        }
+
+        probeCount.incrementAndGet();
+        synchronized (this) {
+            probeLatency = Double.isNaN(probeLatency) ? latency : probeLatency + 0.2 * (latency - probeLatency);
+        }
+
+        double usual = member.probeLatency;
+        String reason = null;
+        if (!success || timedOut || member.control.isBroken()) {
+            reason = timedOut ? "probe timed out after " + timeout + " ms" : "probe failed";
+        } else if (latency > timeout) {
+            reason = "probe took " + latency + " ms";
+        } else if (!Double.isNaN(usual) && latency > usual * probeRegression
+                && latency > usual + PROBE_REGRESSION_MARGIN) {
+            reason = "probe took " + latency + " ms, usually " + Math.round(usual) + " ms";
+        }
+
+        if (reason != null) {
+            probeEvictionCount.incrementAndGet();
+            discard(member, reason);
+        } else {
+            member.probeLatency = Double.isNaN(usual) ? latency : usual + 0.2 * (latency - usual);
+            member.probedAt = System.nanoTime();
+            restore(member);
+        }
+    }
+
+    /**
+     * Return a probed process to the idle processes without marking it as
+     * recently used, so that it still times out.
+     */
+    private void restore(Member member) {
+        idle.offerLast(member);
+        if (closed && idle.remove(member)) {
+            discard(member, "pool closed");
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new RuntimeException("pool has been closed");
+        }
+    }
+
+    /**
+     * Kills a process whose task runs for too long. The task and the
+     * watchdog decide under the same lock which of them came first, so a
+     * process is never killed after its task has completed.
+     */
+    private final class Watchdog {
+        private final ScheduledFuture<?> future;
+        // Guarded by this.
+        private boolean completed;
+        private boolean fired;
+
+        Watchdog(PrinceControl control, long delay) {
+            ScheduledFuture<?> f = null;
+            try {
+                f = timer.schedule(() -> fire(control), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Closed concurrently, and the process is about to be stopped.
+            }
+            this.future = f;
+        }
+
+        private synchronized void fire(PrinceControl control) {
+            if (!completed) {
+                fired = true;
+                control.kill();
+            }
+        }
+
+        /**
+         * Mark the task as completed, so that the watchdog no longer fires.
+         * @return true if the watchdog fired first and killed the process.
+         */
+        synchronized boolean complete() {
+            completed = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+            return fired;
+        }
+    }
+
+    private static final class Member {
+        final PrinceControl control;
+        volatile long idleSince;
+        volatile long probedAt;
+        // The usual probe time in milliseconds, NaN until the first probe.
+        volatile double probeLatency = Double.NaN;
+
+        Member(PrinceControl control) {
+            this.control = control;
+            this.probedAt = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sends each conversion to whichever of a one-shot {@link Prince} process or
+ * a {@link PrinceControlPool} is expected to be faster for it.
+ * <p>
+ * Conversions always run in a one-shot process if the {@code Prince}
+ * instance has options that control processes do not support: remaps, page
+ * size or margin, {@code noSystemFonts}, {@code cssDpi} or additional
+ * options. Otherwise the router keeps an exponentially weighted moving
+ * average of the time taken by each engine for documents of similar size,
+ * in buckets of powers of two, and picks the faster one. The time for the
+ * pool includes waiting for a free process, so a busy pool sends more
+ * conversions to one-shot processes. Each engine is tried at least once per
+ * bucket, and the slower one is tried again periodically so that the
+ * averages follow changes in load. The crossover between the engines is
+ * learnt from these timings. A conversion that fails or throws costs its own
+ * time plus that of redoing it with the other engine, so an engine that
+ * keeps failing is avoided until it is tried again and succeeds.
+ * <p>
+ * The {@code Prince} instance and the processes of the pool should be
+ * configured with the same options, and not changed while conversions are
+ * being routed. The input type must be set for documents given as bytes.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class PrinceRouter {
+    /**
+     * An engine that conversions can be routed to.
+     */
+    public enum Engine {
+        /** A process of the {@link PrinceControlPool}. */
+        CONTROL,
+        /** A one-shot {@link Prince} process. */
+        ONE_SHOT
+    }
+
+    private static final int BUCKETS = 64;
+    private static final double ALPHA = 0.2;
+    private static final int EXPLORE_INTERVAL = 32;
+
+    private final Prince prince;
+    private final PrinceControlPool pool;
+    // Average time in nanoseconds by engine and size bucket, NaN if unknown.
+    private final double[][] estimates = new double[Engine.values().length][BUCKETS];
+    private long decisions;
+    private final AtomicLongArray counts = new AtomicLongArray(Engine.values().length);
+
+    /**
+     * Constructor for {@code PrinceRouter}.
+     * @param prince The instance used for one-shot conversions.
+     * @param pool The pool used for control conversions.
+     */
+    public PrinceRouter(Prince prince, PrinceControlPool pool) {
+        this.prince = prince;
+        this.pool = pool;
+        for (double[] e : estimates) {
+            Arrays.fill(e, Double.NaN);
+        }
+    }
+
+    /**
+     * Convert an XML or HTML document to a PDF file.
+     * @param input The XML or HTML document.
+     * @param output The OutputStream to which Prince will write the PDF output.
+     * @return true if a PDF file was generated successfully.
+     * @throws IOException If an I/O error occurs.
+     */
+    public boolean convert(byte[] input, OutputStream output) throws IOException {
+        return route(input.length,
+                () -> prince.convert(new ByteArrayInputStream(input), output),
+                c -> c.convert(() -> new ByteArrayInputStream(input), input.length, output));
+    }
+
+    /**
+     * Convert an XML or HTML file to a PDF file.
+     * @param input The path of the XML or HTML file.
+     * @param output The OutputStream to which Prince will write the PDF output.
+     * @return true if a PDF file was generated successfully.
+     * @throws IOException If an I/O error occurs.
+     */
+    public boolean convert(Path input, OutputStream output) throws IOException {
+        String inputPath = input.toString();
+        return route(Files.size(input),
+                () -> prince.convert(inputPath, output),
+                c -> c.convert(inputPath, output));
+    }
+
+    /**
+     * The number of conversions routed to an engine.
+     * @param engine The engine.
+     * @return The count.
+     */
+    public long getCount(Engine engine) {
+        return counts.get(engine.ordinal());
+    }
+
+    /**
+     * The average time taken by an engine for documents of a similar size.
+     * @param engine The engine.
+     * @param size The size of the document in bytes.
+     * @return The average time in milliseconds, or NaN if unknown.
+     */
+    public synchronized double getEstimate(Engine engine, long size) {
+        return estimates[engine.ordinal()][bucket(size)] / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private boolean route(long size, PrinceControlPool.Fallback<Boolean> oneShot,
+                          PrinceControlPool.Task<Boolean> control) throws IOException {
+        int bucket = bucket(size);
+        Engine engine = prince.requiresOneShot() ? Engine.ONE_SHOT : choose(bucket);
+        counts.incrementAndGet(engine.ordinal());
+
+        long start = System.nanoTime();
+        boolean result = false;
+        try {
+            result = engine == Engine.ONE_SHOT ? oneShot.run() : pool.execute(control);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (result) {
+                record(engine, bucket, elapsed);
+            } else {
+                recordFailure(engine, bucket, elapsed);
+            }
+        }
+        return result;
+    }
+
+    private synchronized Engine choose(int bucket) {
+        double control = estimates[Engine.CONTROL.ordinal()][bucket];
+        double oneShot = estimates[Engine.ONE_SHOT.ordinal()][bucket];
+        if (Double.isNaN(control)) {
+            return Engine.CONTROL;
+        }
+        if (Double.isNaN(oneShot)) {
+            return Engine.ONE_SHOT;
+        }
+
+        Engine faster = control <= oneShot ? Engine.CONTROL : Engine.ONE_SHOT;
+        if (++decisions % EXPLORE_INTERVAL == 0) {
+            return faster == Engine.CONTROL ? Engine.ONE_SHOT : Engine.CONTROL;
+        }
+        return faster;
+    }
+
+    private synchronized void record(Engine engine, int bucket, long elapsed) {
+        double[] e = estimates[engine.ordinal()];
+        e[bucket] = Double.isNaN(e[bucket]) ? elapsed : e[bucket] + ALPHA * (elapsed - e[bucket]);
+    }
+
+    /**
+     * Failed conversions may stop early, so their time says little about the
+     * cost of a conversion. Instead, the estimate is set to the time of the
+     * failure plus that of the other engine, which would have to redo the
+     * conversion, or twice the time of the failure if that is not known yet.
+     */
+    private synchronized void recordFailure(Engine engine, int bucket, long elapsed) {
+        Engine other = engine == Engine.CONTROL ? Engine.ONE_SHOT : Engine.CONTROL;
+        double retry = estimates[other.ordinal()][bucket];
+        estimates[engine.ordinal()][bucket] = elapsed + (Double.isNaN(retry) ? elapsed : retry);
+    }
+
+    private static int bucket(long size) {
+        return 63 - Long.numberOfLeadingZeros(Math.max(size, 1));
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * A local cache of remote resources, such as stylesheets, fonts and images
+ * served from a CDN, so that they are downloaded once per time-to-live
+ * rather than once per conversion.
+ * <p>
+ * Resources are fetched into a directory, and revalidated with the server
+ * using their {@code ETag} or {@code Last-Modified} header once their
+ * time-to-live has expired. If revalidation fails, the stale copy is used.
+ * <p>
+ * The cached files can be given to {@link Prince} as remappings with
+ * {@link #addRemaps(Prince, Collection)}, or to {@link PrinceControl} as
+ * job resources, e.g.
+ * <pre>
+ * control.addStyleSheet(resourceCache.fetch("https://cdn.example.com/style.css"));
+ * </pre>
+ * <p>
+ * This class is thread-safe.
+ */
+public final class ResourceCache implements Closeable {
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+
+    private final Path directory;
+    private volatile long ttl = 3600;
+    private volatile int httpTimeout = 30;
+    private volatile int threads = 4;
+    private ExecutorService executor;
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for {@code ResourceCache}. The directory is created if it
+     * does not exist.
+     * @param directory The directory to store the resources in.
+     * @throws IOException If the directory cannot be created.
+     */
+    public ResourceCache(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Set how long a fetched resource is used before it is revalidated with
+     * the server. Default value is {@code 3600} (one hour).
+     * @param ttl The time-to-live in seconds. Value must not be negative.
+     */
+    public void setTtl(long ttl) {
+        if (ttl < 0) {
+            throw new IllegalArgumentException("invalid ttl value (must be >= 0)");
+        }
+        this.ttl = ttl;
+    }
+
+    /**
+     * Set the HTTP connect and read timeout. Default value is {@code 30}.
+     * @param httpTimeout The HTTP timeout in seconds. Value must be greater than 0.
+     */
+    public void setHttpTimeout(int httpTimeout) {
+        if (httpTimeout < 1) {
+            throw new IllegalArgumentException("invalid httpTimeout value (must be > 0)");
+        }
+        this.httpTimeout = httpTimeout;
+    }
+
+    /**
+     * Set the number of resources fetched in parallel by
+     * {@link #prefetch(Collection)}. It only takes effect before the first
+     * prefetch. Default value is {@code 4}.
+     * @param threads The number of threads. Value must be greater than 0.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("invalid threads value (must be > 0)");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Get the local copy of a resource, fetching or revalidating it if
+     * needed. Concurrent requests for the same URL share one fetch.
+     * @param url The HTTP or HTTPS URL of the resource.
+     * @return The path of the local copy.
+     * @throws IOException If the resource cannot be fetched and there is no
+     *                     stale copy.
+     */
+    public Path fetch(String url) throws IOException {
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(url, future);
+        if (existing != null) {
+            return Util.await(existing);
+        }
+
+        try {
+            Path path = fetchInternal(url);
+            future.complete(path);
+            return path;
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(url, future);
+        }
+    }
+
+    /**
+     * Fetch resources in parallel.
+     * @param urls The HTTP or HTTPS URLs of the resources.
+     * @return The paths of the local copies, by URL.
+     * @throws IOException If any resource cannot be fetched and there is no
+     *                     stale copy. The other resources are still fetched.
+     */
+    public Map<String, Path> prefetch(Collection<String> urls) throws IOException {
+        ExecutorService executor = getExecutor();
+        Map<String, CompletableFuture<Path>> futures = new LinkedHashMap<>();
+        for (String url : urls) {
+            futures.computeIfAbsent(url, u -> {
+                CompletableFuture<Path> future = new CompletableFuture<>();
+                executor.execute(() -> {
+                    try {
+                        future.complete(fetch(u));
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+                });
+                return future;
+            });
+        }
+
+        Map<String, Path> paths = new LinkedHashMap<>();
+        IOException failure = null;
+        for (Map.Entry<String, CompletableFuture<Path>> e : futures.entrySet()) {
+            try {
+                paths.put(e.getKey(), Util.await(e.getValue()));
+            } catch (IOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return paths;
+    }
+
+    /**
+     * Fetch resources in parallel, and remap the URL directory of each one
+     * to the local directory holding its copy. Prince then reads every
+     * resource under those URL directories from the cache, so the list has
+     * to include all of the resources that Prince needs from them. URLs with
+     * a query string, or a file name that cannot be stored as is, are
+     * fetched but not remapped.
+     * @param prince The Prince instance to add the remappings to.
+     * @param urls The HTTP or HTTPS URLs of the resources.
+     * @throws IOException If any resource cannot be fetched and there is no
+     *                     stale copy.
+     */
+    public void addRemaps(Prince prince, Collection<String> urls) throws IOException {
+        Set<String> prefixes = new HashSet<>();
+        for (Map.Entry<String, Path> e : prefetch(urls).entrySet()) {
+            String prefix = remapPrefix(e.getKey());
+            if (prefix != null && prefixes.add(prefix)) {
+                prince.addRemap(prefix, e.getValue().getParent().toString());
+            }
+        }
+    }
+
+    /**
+     * Stop the threads used for prefetching. The cached files are left in
+     * place.
+     */
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "prince-resource-fetch");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return executor;
+    }
+
+    private Path fetchInternal(String url) throws IOException {
+        URL u = new URL(url);
+        if (!u.getProtocol().equals("http") && !u.getProtocol().equals("https")) {
+            throw new IllegalArgumentException("not an HTTP URL: " + url);
+        }
+
+        // Files are grouped by URL directory, so that a directory can be
+        // remapped as a whole.
+        String prefix = url.substring(0, url.lastIndexOf('/') + 1);
+        String name = remapPrefix(url) != null ? url.substring(prefix.length()) : hash(url);
+        Path file = directory.resolve("files").resolve(hash(prefix)).resolve(name);
+        Path metaFile = directory.resolve("meta").resolve(hash(url) + ".properties");
+
+        Properties meta = readMeta(metaFile);
+        boolean cached = meta != null && Files.exists(file);
+        long now = System.currentTimeMillis();
+        if (cached && now - Long.parseLong(meta.getProperty("fetched", "0")) < ttl * 1000) {
+            return file;
+        }
+
+        HttpURLConnection conn = (HttpURLConnection) u.openConnection();
+        try {
+            conn.setConnectTimeout(httpTimeout * 1000);
+            conn.setReadTimeout(httpTimeout * 1000);
+            if (cached) {
+                String etag = meta.getProperty("etag");
+                String lastModified = meta.getProperty("last-modified");
+                if (etag != null) { conn.setRequestProperty("If-None-Match", etag); }
+                if (lastModified != null) { conn.setRequestProperty("If-Modified-Since", lastModified); }
+            }
+
+            int status = conn.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached) {
+                meta.setProperty("fetched", Long.toString(now));
+                writeMeta(metaFile, meta);
+                return file;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status + " fetching " + url);
+            }
+
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), "fetch-", ".tmp");
+            try {
+                try (InputStream in = conn.getInputStream()) {
+                    Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Util.moveAtomically(temp, file);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+
+            meta = new Properties();
+            String etag = conn.getHeaderField("ETag");
+            String lastModified = conn.getHeaderField("Last-Modified");
+            if (etag != null) { meta.setProperty("etag", etag); }
+            if (lastModified != null) { meta.setProperty("last-modified", lastModified); }
+            meta.setProperty("fetched", Long.toString(now));
+            writeMeta(metaFile, meta);
+            return file;
+        } catch (IOException e) {
+            if (cached) {
+                // A stale copy is better than failing the conversion.
+                return file;
+            }
+            throw e;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * The URL directory to remap for a resource, or null if it cannot be
+     * remapped.
+     */
+    private static String remapPrefix(String url) {
+        if (url.indexOf('?') >= 0 || url.indexOf('#') >= 0) {
+            return null;
+        }
+        int slash = url.lastIndexOf('/');
+        String name = url.substring(slash + 1);
+        return SAFE_NAME.matcher(name).matches() ? url.substring(0, slash + 1) : null;
+    }
+
+    private static Properties readMeta(Path metaFile) {
+        try (InputStream in = Files.newInputStream(metaFile)) {
+            Properties meta = new Properties();
+            meta.load(in);
+            return meta;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeMeta(Path metaFile, Properties meta) throws IOException {
+        Files.createDirectories(metaFile.getParent());
+        Path temp = Files.createTempFile(metaFile.getParent(), "meta-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                meta.store(out, null);
+            }
+            Util.moveAtomically(temp, metaFile);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String hash(String s) {
+        return new Fingerprint().add(s).finish().substring(0, 32);
+    }
+}
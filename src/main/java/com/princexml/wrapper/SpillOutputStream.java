@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * An output stream that buffers its data in memory until it exceeds a
+ * threshold, and then moves it to a temporary file. Used for job resources
+ * whose length is not known until they have been written in full.
+ */
+final class SpillOutputStream extends OutputStream {
+    // The largest array that can be allocated on common JVMs.
+    private static final long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    private static final int INITIAL_SIZE = 8192;
+
+    private final long memoryThreshold;
+    private final Path spillDirectory;
+    private final MemoryBudget.Reservation reservation;
+    private byte[] buf;
+    private int count;
+    // The part of the reservation taken for buf.
+    private long reserved;
+    private Path file;
+    private OutputStream fileOut;
+
+    /**
+     * @param spillDirectory The directory for the temporary file, or null for
+     *                       the default temporary-file directory.
+     */
+    SpillOutputStream(long memoryThreshold, Path spillDirectory) {
+        this(memoryThreshold, spillDirectory, null);
+    }
+
+    /**
+     * @param reservation The reservation that the memory buffer has to fit
+     *                    in, or null. The data is spilled as soon as the
+     *                    buffer cannot grow within it.
+     */
+    SpillOutputStream(long memoryThreshold, Path spillDirectory, MemoryBudget.Reservation reservation) {
+        this.memoryThreshold = Math.max(Math.min(memoryThreshold, MAX_ARRAY_LENGTH), 0);
+        this.spillDirectory = spillDirectory;
+        this.reservation = reservation;
+
+        int initial = (int) Math.min(INITIAL_SIZE, this.memoryThreshold);
+        if (reservation == null || reservation.tryGrow(initial)) {
+            buf = new byte[initial];
+            reserved = initial;
+        } else {
+            // Spilled on the first write.
+            buf = new byte[0];
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (fileOut != null) {
+            fileOut.write(b);
+        } else if (count < buf.length) {
+            buf[count++] = (byte) b;
+        } else {
+            // The buffer has to grow or spill.
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (fileOut == null && count + (long) len > memoryThreshold) {
+            spill();
+        }
+        if (fileOut != null) {
+            fileOut.write(b, off, len);
+            return;
+        }
+        if (count + len > buf.length) {
+            int newLength = (int) Math.min(Math.max(buf.length * 2L, count + (long) len), memoryThreshold);
+            if (reservation != null && !reservation.tryGrow(newLength - buf.length)) {
+                spill();
+                fileOut.write(b, off, len);
+                return;
+            }
+            reserved += newLength - buf.length;
+            buf = Arrays.copyOf(buf, newLength);
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileOut != null) {
+            fileOut.close();
+        }
+    }
+
+    /**
+     * The data written, as a job resource. The stream must be closed first.
+     */
+    JobResource toJobResource() {
+        return file != null ? JobResource.temporary(file) : JobResource.of(buf, count);
+    }
+
+    /**
+     * Delete the temporary file, if any, when the data is not going to be
+     * used.
+     */
+    void discard() {
+        try {
+            close();
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void spill() throws IOException {
+        file = spillDirectory != null
+                ? Files.createTempFile(spillDirectory, "prince-", ".dat")
+                : Files.createTempFile("prince-", ".dat");
+        fileOut = new BufferedOutputStream(Files.newOutputStream(file), Util.BUFFER_SIZE);
+        fileOut.write(buf, 0, count);
+        buf = null;
+        if (reservation != null) {
+            reservation.shrink(reserved);
+        }
+        reserved = 0;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Processes launched ahead of time with a fixed command line, each blocked
+ * reading its document from stdin, so that process creation is off the
+ * critical path of a conversion. Processes that are taken are replaced in
+ * the background.
+ * <p>
+ * The command line follows the jobs: when a job needs a different one, the
+ * waiting processes are destroyed and replaced by processes with the new
+ * command line, on the assumption that later jobs will match it.
+ */
+final class StandbyProcesses {
+    private final int count;
+    private final ExecutorService launcher;
+    // Guarded by this.
+    private List<String> cmdLine;
+    private final ArrayDeque<Process> ready = new ArrayDeque<>();
+    private boolean filling;
+    private boolean closed;
+
+    StandbyProcesses(int count, List<String> cmdLine) {
+        this.count = count;
+        this.cmdLine = new ArrayList<>(cmdLine);
+        this.launcher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "prince-standby");
+            t.setDaemon(true);
+            return t;
+        });
+        synchronized (this) {
+            replenish();
+        }
+    }
+
+    /**
+     * Take a waiting process with exactly this command line, or return null
+     * if there is none.
+     */
+    synchronized Process take(List<String> cmdLine) {
+        if (closed) {
+            return null;
+        }
+
+        Process process = null;
+        if (cmdLine.equals(this.cmdLine)) {
+            while ((process = ready.poll()) != null && !process.isAlive()) {
+                // Exited while waiting, such as after a license failure.
+            }
+        } else {
+            this.cmdLine = new ArrayList<>(cmdLine);
+            destroyReady();
+        }
+        replenish();
+        return process;
+    }
+
+    synchronized int getReadyCount() {
+        return ready.size();
+    }
+
+    /**
+     * Destroy the waiting processes and stop replacing them.
+     */
+    synchronized void close() {
+        closed = true;
+        destroyReady();
+        launcher.shutdown();
+    }
+
+    private void replenish() {
+        if (!filling && ready.size() < count) {
+            filling = true;
+            launcher.execute(this::fill);
+        }
+    }
+
+    private void fill() {
+        while (true) {
+            List<String> target;
+            synchronized (this) {
+                if (closed || ready.size() >= count) {
+                    filling = false;
+                    return;
+                }
+                target = cmdLine;
+            }
+
+            Process process;
+            try {
+                process = Util.invokeProcess(target);
+            } catch (IOException e) {
+                // Retried when the next process is taken.
+                synchronized (this) {
+                    filling = false;
+                }
+                return;
+            }
+
+            synchronized (this) {
+                if (!closed && target == cmdLine) {
+                    ready.add(process);
+                    continue;
+                }
+            }
+            process.destroy();
+        }
+    }
+
+    private void destroyReady() {
+        Process process;
+        while ((process = ready.poll()) != null) {
+            process.destroy();
+        }
+    }
+}
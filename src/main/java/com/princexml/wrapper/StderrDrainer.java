@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Reads the stderr of a long-lived process on a background thread, so that
+ * the process never blocks on a full pipe, and keeps the most recent output
+ * for diagnostics.
+ */
+final class StderrDrainer {
+    private final Thread thread;
+    private final int maxSize;
+    // Guarded by this.
+    private final ArrayDeque<String> lines = new ArrayDeque<>();
+    private int size;
+
+    /**
+     * @param maxSize The approximate number of characters to keep.
+     * @param handler Called with each line, on the background thread.
+     */
+    StderrDrainer(InputStream stderr, int maxSize, Consumer<String> handler) {
+        this.maxSize = maxSize;
+        this.thread = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stderr, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    add(line);
+                    try {
+                        handler.accept(line);
+                    } catch (RuntimeException ignored) {
+                        // A failing handler must not stop the draining.
+                    }
+                }
+            } catch (IOException ignored) {
+                // The stream was closed when the process was stopped.
+            }
+        }, "prince-control-stderr");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The most recent output, one line per line.
+     */
+    synchronized String getTail() {
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Wait for the output of a process that has exited to be read in full.
+     */
+    void awaitEnd(long millis) throws InterruptedException {
+        thread.join(millis);
+    }
+
+    private synchronized void add(String line) {
+        if (line.length() > maxSize) {
+            line = line.substring(line.length() - maxSize);
+        }
+        lines.add(line);
+        size += line.length() + 1;
+        while (size > maxSize && lines.size() > 1) {
+            size -= lines.remove().length() + 1;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2006, 2015, 2021 YesLogic Pty. Ltd.
+ * Copyright (C) 2005-2006, 2015, 2021, 2026 YesLogic Pty. Ltd.
  * All rights reserved.
  */
 
@@ -7,8 +7,15 @@ package com.princexml.wrapper;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Utility methods.
@@ -26,12 +33,20 @@ final class Util {
 
     /**
      * Read all the available data from an InputStream and write it to an
-     * OutputStream. The data is copied in chunks of 4096 bytes. There is no
-     * return value, as an IOException will be thrown if a read or write
-     * operation fails.
+     * OutputStream. The data is copied in chunks of {@link #BUFFER_SIZE}
+     * bytes. There is no return value, as an IOException will be thrown if a
+     * read or write operation fails.
      */
     static void copyInputToOutput(InputStream in, OutputStream out) throws IOException {
-        final byte[] buffer = new byte[BUFFER_SIZE];
+        copyInputToOutput(in, out, BUFFER_SIZE);
+    }
+
+    /**
+     * Same as {@link #copyInputToOutput(InputStream, OutputStream)}, but with
+     * an explicit buffer size.
+     */
+    static void copyInputToOutput(InputStream in, OutputStream out, int bufferSize) throws IOException {
+        final byte[] buffer = new byte[bufferSize];
         int bytesRead;
         do {
             bytesRead = in.read(buffer);
@@ -40,4 +55,41 @@ final class Util {
             }
         } while (bytesRead != -1);
     }
+
+    /**
+     * Rename a file, replacing the target, atomically if the file system
+     * supports it.
+     */
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Wait for a result computed by another thread, rethrowing its failure.
+     * I/O errors are wrapped so that the stack trace includes this thread.
+     */
+    static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
 }
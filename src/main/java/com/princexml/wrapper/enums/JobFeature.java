@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper.enums;
+
+/**
+ * Optional job fields of the control protocol, which a Prince engine may not
+ * support. Used by
+ * {@link com.princexml.wrapper.PrinceControl#setCapabilityResolver(java.util.function.Function)}.
+ */
+public enum JobFeature {
+    /** The {@code "iframes"} field, set by {@code setIframes}. */
+    IFRAMES("iframes"),
+    /** The {@code "pdf-forms"} field, set by {@code setPdfForms}. */
+    PDF_FORMS("pdf-forms"),
+    /** The {@code "pdf-script"} field, set by {@code setPdfScript}. */
+    PDF_SCRIPT("pdf-script"),
+    /** The {@code "pdf-event-scripts"} field, set by {@code addPdfEventScript}. */
+    PDF_EVENT_SCRIPTS("pdf-event-scripts");
+
+    private final String jobFeature;
+
+    JobFeature(String jobFeature) {
+        this.jobFeature = jobFeature;
+    }
+
+    @Override
+    public String toString() {
+        return this.jobFeature;
+    }
+}
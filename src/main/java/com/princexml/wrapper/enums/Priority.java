@@ -0,0 +1,17 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper.enums;
+
+/**
+ * Priority class of a conversion, used by
+ * {@link com.princexml.wrapper.FairScheduler}.
+ */
+public enum Priority {
+    /** A conversion that someone is waiting for, which runs first. */
+    INTERACTIVE,
+    /** A bulk conversion, which uses the capacity left over. */
+    BATCH
+}
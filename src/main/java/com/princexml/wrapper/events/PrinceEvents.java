@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2006, 2021 YesLogic Pty. Ltd.
+ * Copyright (C) 2005-2006, 2021, 2026 YesLogic Pty. Ltd.
  * All rights reserved.
  */
 
@@ -7,6 +7,14 @@ package com.princexml.wrapper.events;
 
 /**
  * Can be used to receive messages from Prince.
+ * <p>
+ * Messages are usually received on the thread running the conversion, but
+ * a {@link com.princexml.wrapper.PrinceControl} process also reports
+ * messages written to its stderr from a background thread, including
+ * between jobs. The calls made by one {@code Prince} or
+ * {@code PrinceControl} instance never overlap, but an implementation whose
+ * state is read from other threads, or that is shared by several instances,
+ * has to be thread-safe.
  */
 public interface PrinceEvents {
     /**
@@ -0,0 +1,114 @@
+package com.princexml.wrapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTrip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Chunk.writeChunk(out, "dat", "hello");
+        assertEquals("dat 5\nhello\n", out.toString("UTF-8"));
+
+        Chunk chunk = Chunk.readChunk(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("dat", chunk.getTag());
+        assertEquals(5, chunk.getLength());
+        assertEquals("hello", chunk.getString());
+        assertFalse(chunk.isSpilled());
+    }
+
+    @Test
+    void fileResource() throws IOException {
+        Path file = Files.write(dir.resolve("style.css"), "p { color: red }".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JobResource.of(file).writeChunk(out, "dat");
+        assertEquals("dat 16\np { color: red }\n", out.toString("UTF-8"));
+    }
+
+    @Test
+    void streamResource() throws IOException {
+        byte[] data = "hello".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JobResource.of(() -> new ByteArrayInputStream(data), 5).writeChunk(out, "dat");
+        assertEquals("dat 5\nhello\n", out.toString("UTF-8"));
+
+        assertThrows(IOException.class, () ->
+                JobResource.of(() -> new ByteArrayInputStream(data), 6).writeChunk(new ByteArrayOutputStream(), "dat"));
+        assertThrows(IOException.class, () ->
+                JobResource.of(() -> new ByteArrayInputStream(data), 4).writeChunk(new ByteArrayOutputStream(), "dat"));
+        assertThrows(IOException.class, () -> JobResource.of(() -> {
+            throw new UncheckedIOException(new IOException("gone"));
+        }, 5).writeChunk(new ByteArrayOutputStream(), "dat"));
+    }
+
+    @Test
+    void emptyChunk() throws IOException {
+        Chunk chunk = Chunk.readChunk(stream("end 0\n\n"));
+        assertEquals("end", chunk.getTag());
+        assertEquals(0, chunk.getLength());
+    }
+
+    @Test
+    void spill() throws IOException {
+        Path file;
+        try (Chunk chunk = Chunk.readChunk(stream("pdf 10\n0123456789\n"), 4, dir)) {
+            assertTrue(chunk.isSpilled());
+            file = chunk.getPath();
+            assertEquals(dir, file.getParent());
+            assertEquals("0123456789", chunk.getString());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            chunk.writeTo(out);
+            assertEquals("0123456789", out.toString("UTF-8"));
+        }
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void belowThreshold() throws IOException {
+        try (Chunk chunk = Chunk.readChunk(stream("pdf 4\n0123\n"), 4, dir)) {
+            assertFalse(chunk.isSpilled());
+        }
+    }
+
+    @Test
+    void truncatedSpillIsDeleted() throws IOException {
+        // Longer than an int, but the data runs out early.
+        InputStream in = stream("pdf 5000000000\n0123");
+        assertThrows(IOException.class, () -> Chunk.readChunk(in, 1024, dir));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void invalidLength() {
+        assertThrows(IOException.class, () -> Chunk.readChunk(stream("pdf 1234567890123456789\n")));
+        assertThrows(IOException.class, () -> Chunk.readChunk(stream("pdf \n\n")));
+        assertThrows(IOException.class, () -> Chunk.readChunk(stream("pdf 1x\n")));
+    }
+
+    @Test
+    void missingNewline() {
+        assertThrows(IOException.class, () -> Chunk.readChunk(stream("dat 2\nabc")));
+    }
+
+    private static InputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,115 @@
+package com.princexml.wrapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskOutputCacheTest {
+    private static final String KEY_A = "aa00000000000000000000000000000000000000000000000000000000000000";
+    private static final String KEY_B = "bb00000000000000000000000000000000000000000000000000000000000000";
+
+    @TempDir
+    Path dir;
+
+    private static OutputCache.Result result(int pdfSize, boolean success) {
+        byte[] log = (success ? "fin|success\n" : "fin|failure\n").getBytes(StandardCharsets.UTF_8);
+        return new OutputCache.Result(new byte[pdfSize], log);
+    }
+
+    private static long countEntries(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(p -> p.toString().endsWith(".entry")).count();
+        }
+    }
+
+    @Test
+    void sharedBetweenInstances() throws IOException {
+        AtomicInteger conversions = new AtomicInteger();
+        OutputCache.Conversion conversion = () -> {
+            conversions.incrementAndGet();
+            return result(100, true);
+        };
+
+        try (DiskOutputCache first = new DiskOutputCache(dir, 1 << 20);
+             DiskOutputCache second = new DiskOutputCache(dir, 1 << 20)) {
+            first.get(KEY_A, conversion);
+            OutputCache.Result r = second.get(KEY_A, conversion);
+
+            assertEquals(1, conversions.get());
+            assertEquals(100, r.pdf.length);
+            assertTrue(r.success);
+            assertEquals(1, second.getHitCount());
+            assertTrue(Files.exists(dir.resolve("aa").resolve(KEY_A + ".entry")));
+        }
+
+        try (Stream<Path> files = Files.walk(dir)) {
+            assertEquals(0, files.filter(p -> p.toString().endsWith(".tmp")).count());
+        }
+    }
+
+    @Test
+    void failuresAreNotStored() throws IOException {
+        try (DiskOutputCache cache = new DiskOutputCache(dir, 1 << 20)) {
+            cache.get(KEY_A, () -> result(0, false));
+            assertEquals(0, countEntries(dir));
+        }
+    }
+
+    @Test
+    void corruptEntryIsReplaced() throws IOException {
+        try (DiskOutputCache cache = new DiskOutputCache(dir, 1 << 20)) {
+            Path entry = Files.createDirectories(dir.resolve("aa")).resolve(KEY_A + ".entry");
+            Files.write(entry, "garbage".getBytes(StandardCharsets.UTF_8));
+
+            assertEquals(10, cache.get(KEY_A, () -> result(10, true)).pdf.length);
+            assertEquals(10, cache.get(KEY_A, () -> fail("should be cached")).pdf.length);
+        }
+    }
+
+    @Test
+    void evictBySizeAndAge() throws IOException {
+        try (DiskOutputCache cache = new DiskOutputCache(dir, 150)) {
+            cache.get(KEY_A, () -> result(100, true));
+            Path a = dir.resolve("aa").resolve(KEY_A + ".entry");
+            Files.setLastModifiedTime(a, FileTime.fromMillis(System.currentTimeMillis() - 10000));
+            cache.get(KEY_B, () -> result(100, true));
+
+            // Both fit on their own, but not together, so the older goes.
+            cache.evict();
+            assertFalse(Files.exists(a));
+            assertEquals(1, countEntries(dir));
+            assertTrue(cache.getSize() <= 150);
+
+            Path b = dir.resolve("bb").resolve(KEY_B + ".entry");
+            Files.setLastModifiedTime(b, FileTime.fromMillis(System.currentTimeMillis() - 10000));
+            cache.setMaxAge(5);
+            cache.evict();
+            assertEquals(0, countEntries(dir));
+            assertEquals(2, cache.getEvictionCount());
+        }
+    }
+
+    @Test
+    void behindOutputCache() throws IOException {
+        try (DiskOutputCache disk = new DiskOutputCache(dir, 1 << 20)) {
+            new OutputCache(1 << 20, disk).get(KEY_A, () -> result(10, true));
+
+            // A new memory tier, as in another JVM, finds the output on disk.
+            OutputCache memory = new OutputCache(1 << 20, disk);
+            memory.get(KEY_A, () -> fail("should be cached"));
+            memory.get(KEY_A, () -> fail("should be cached"));
+            assertEquals(1, memory.getMissCount());
+            assertEquals(1, memory.getHitCount());
+            assertEquals(1, disk.getHitCount());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.princexml.wrapper;
+
+import com.princexml.wrapper.enums.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FairSchedulerTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Future<?> submit(FairScheduler scheduler, String tenant, Priority priority, List<String> order)
+            throws InterruptedException {
+        int waiting = scheduler.getWaitingCount();
+        Future<?> future = executor.submit(() -> scheduler.execute(tenant, priority, () -> order.add(tenant)));
+        // Queue the tasks in a known order.
+        while (scheduler.getWaitingCount() == waiting) {
+            Thread.sleep(1);
+        }
+        return future;
+    }
+
+    private Future<?> block(FairScheduler scheduler, String tenant, CountDownLatch latch) {
+        return executor.submit(() -> scheduler.execute(tenant, Priority.BATCH, () -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return null;
+        }));
+    }
+
+    private static void awaitRunning(FairScheduler scheduler, int count) throws InterruptedException {
+        while (scheduler.getRunningCount() != count) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void interactiveFirstThenFairShares() throws Exception {
+        FairScheduler scheduler = new FairScheduler(1);
+        scheduler.setWeight("b", 2);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(1);
+        Future<?> blocker = block(scheduler, "a", latch);
+        awaitRunning(scheduler, 1);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(submit(scheduler, "a", Priority.BATCH, order));
+        }
+        for (int i = 0; i < 4; i++) {
+            futures.add(submit(scheduler, "b", Priority.BATCH, order));
+        }
+        futures.add(submit(scheduler, "c", Priority.INTERACTIVE, order));
+
+        latch.countDown();
+        blocker.get();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        assertEquals("c", order.get(0));
+        // With twice the weight, b gets two turns for every one of a's, so
+        // its tasks finish within the first six batch turns.
+        assertEquals(4, Collections.frequency(order.subList(1, 7), "b"));
+        assertEquals(0, scheduler.getRunningCount());
+        assertEquals(0, scheduler.getWaitingCount());
+    }
+
+    @Test
+    void batchBacklogDoesNotDelayInteractive() throws Exception {
+        FairScheduler scheduler = new FairScheduler(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(1);
+        Future<?> blocker = block(scheduler, "c", latch);
+        awaitRunning(scheduler, 1);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(submit(scheduler, "a", Priority.BATCH, order));
+        }
+        for (int i = 0; i < 3; i++) {
+            futures.add(submit(scheduler, "b", Priority.INTERACTIVE, order));
+        }
+        futures.add(submit(scheduler, "a", Priority.INTERACTIVE, order));
+
+        latch.countDown();
+        blocker.get();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        // a's interactive task competes only with b's interactive tasks, as
+        // if a had no batch tasks queued.
+        assertTrue(order.subList(0, 2).contains("a"));
+        assertEquals(Collections.nCopies(5, "a"), order.subList(4, 9));
+    }
+
+    @Test
+    void tenantLimit() throws Exception {
+        FairScheduler scheduler = new FairScheduler(4);
+        scheduler.setTenantLimit("a", 1);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(block(scheduler, "a", latch));
+        }
+        futures.add(block(scheduler, "b", latch));
+        futures.add(block(scheduler, "b", latch));
+
+        awaitRunning(scheduler, 3);
+        Thread.sleep(50);
+        assertEquals(3, scheduler.getRunningCount());
+        assertEquals(1, scheduler.getRunningCount("a"));
+        assertEquals(2, scheduler.getRunningCount("b"));
+        assertEquals(2, scheduler.getWaitingCount());
+
+        latch.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        assertEquals(0, scheduler.getRunningCount("a"));
+    }
+}
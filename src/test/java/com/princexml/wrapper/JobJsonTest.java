@@ -0,0 +1,154 @@
+package com.princexml.wrapper;
+
+import com.princexml.wrapper.enums.InputType;
+import com.princexml.wrapper.enums.JobFeature;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobJsonTest {
+
+    @Test
+    void template() {
+        PrinceControl p = new PrinceControl("prince");
+        String json = p.getJobJson().toString();
+
+        assertTrue(json.startsWith("{\"input\":{\"src\":[],"), json);
+        assertTrue(json.endsWith(",\"job-resource-count\":0}"), json);
+        assertEquals(json, p.getJobJson().toString());
+    }
+
+    @Test
+    void templateInvalidated() {
+        PrinceControl p = new PrinceControl("prince");
+        p.setPdfTitle("first");
+        assertTrue(p.getJobJson().toString().contains("\"title\":\"first\""));
+
+        p.setPdfTitle("second");
+        p.setInputType(InputType.HTML);
+        String json = p.getJobJson().toString();
+        assertTrue(json.contains("\"title\":\"second\""), json);
+        assertTrue(json.contains("\"type\":\"html\""), json);
+    }
+
+    @Test
+    void resourceCount() {
+        PrinceControl p = new PrinceControl("prince");
+        p.getJobJson();
+
+        p.addStyleSheet("a".getBytes(StandardCharsets.UTF_8));
+        p.addFileAttachment("b".getBytes(StandardCharsets.UTF_8), "b.txt", null);
+        String json = p.getJobJson().toString();
+        assertTrue(json.contains("\"styles\":[\"job-resource:0\"]"), json);
+        assertTrue(json.contains("\"attach\":[{\"url\":\"job-resource:1\",\"filename\":\"b.txt\"}]"), json);
+        assertTrue(json.endsWith(",\"job-resource-count\":2}"), json);
+    }
+
+    @Test
+    void everySetterInvalidatesTemplate() throws Exception {
+        List<String> stale = new ArrayList<>();
+        int inJob = 0;
+        for (Method m : PrinceControl.class.getMethods()) {
+            String name = m.getName();
+            if (m.getDeclaringClass() == Object.class || Modifier.isStatic(m.getModifiers())
+                    || m.getReturnType() != void.class || name.equals("addShutdownHook")
+                    || !(name.startsWith("set") || name.startsWith("add") || name.startsWith("clear"))) {
+                continue;
+            }
+
+            // Cache the template, change the option, and then compare the
+            // template used for the next job with one built from scratch.
+            PrinceControl p = new PrinceControl("prince");
+            String before;
+            if (name.startsWith("clear")) {
+                Method add = adder(name);
+                add.invoke(p, arguments(add, 1));
+                before = p.getJobJson().toString();
+                m.invoke(p);
+            } else {
+                m.invoke(p, arguments(m, 1));
+                before = p.getJobJson().toString();
+                m.invoke(p, arguments(m, 2));
+            }
+            String cached = p.getJobJson().toString();
+            p.configChanged();
+            String rebuilt = p.getJobJson().toString();
+
+            if (!cached.equals(rebuilt)) {
+                stale.add(m.toString());
+            }
+            if (!before.equals(rebuilt)) {
+                inJob++;
+            }
+        }
+
+        assertEquals(new ArrayList<String>(), stale);
+        assertTrue(inJob > 30, "only " + inJob + " options found in the job");
+    }
+
+    private static Method adder(String clear) {
+        String name = "add" + clear.substring("clear".length(), clear.length() - 1);
+        for (Method m : PrinceControl.class.getMethods()) {
+            if (m.getName().equals(name) && m.getParameterTypes()[0] != Supplier.class) {
+                return m;
+            }
+        }
+        throw new AssertionError("no " + name + " for " + clear);
+    }
+
+    /**
+     * Arguments for a setter, which differ for each {@code variant}.
+     */
+    private static Object[] arguments(Method m, int variant) {
+        Class<?>[] types = m.getParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            args[i] = argument(types[i], variant);
+        }
+        return args;
+    }
+
+    private static Object argument(Class<?> type, int variant) {
+        if (type == String.class) {
+            return "value" + variant;
+        } else if (type == boolean.class) {
+            return variant == 1;
+        } else if (type == int.class) {
+            return variant;
+        } else if (type == long.class) {
+            return (long) variant;
+        } else if (type == byte[].class) {
+            return new byte[] {(byte) variant};
+        } else if (type == Path.class) {
+            return Paths.get("file" + variant);
+        } else if (type == Supplier.class) {
+            Supplier<InputStream> supplier = () -> new ByteArrayInputStream(new byte[] {(byte) variant});
+            return supplier;
+        } else if (type == Function.class) {
+            Function<String, Set<JobFeature>> resolver = version -> EnumSet.allOf(JobFeature.class);
+            return resolver;
+        } else if (type == OutputCache.class) {
+            return new OutputCache(variant);
+        } else if (type == MemoryBudget.class) {
+            return new MemoryBudget(variant);
+        } else if (type.isEnum()) {
+            Object[] values = type.getEnumConstants();
+            return values[(variant - 1) % values.length];
+        }
+        throw new AssertionError("no argument of type " + type);
+    }
+}
@@ -2,6 +2,10 @@ package com.princexml.wrapper;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class JsonTest {
@@ -59,4 +63,56 @@ class JsonTest {
                 .endObj();
         assertEquals("\"ab\\\\cd\\\"ef\\\"gh\\\\ij\":{}", j.toString());
     }
+
+    @Test
+    void escapeControlCharacters() {
+        Json j = new Json()
+                .field("name", "a\nb\tc\r\u0001\u001f\b\f");
+        assertEquals("\"name\":\"a\\nb\\tc\\r\\u0001\\u001f\\b\\f\"", j.toString());
+    }
+
+    @Test
+    void encodeUtf8() throws IOException {
+        String value = "caf\u00e9 \u20ac \ud83d\ude00";
+        Json j = new Json()
+                .value(value);
+
+        byte[] expected = ("\"" + value + "\"").getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        j.writeTo(out);
+        assertArrayEquals(expected, out.toByteArray());
+        assertEquals(expected.length, j.length());
+    }
+
+    @Test
+    void intValues() {
+        Json j = new Json()
+                .value(0)
+                .value(-42)
+                .value(Integer.MIN_VALUE)
+                .value(Integer.MAX_VALUE);
+        assertEquals("0,-42,-2147483648,2147483647", j.toString());
+    }
+
+    @Test
+    void reset() {
+        Json j = new Json()
+                .field("a", 1);
+        j.reset()
+                .field("b", 2);
+        assertEquals("\"b\":2", j.toString());
+    }
+
+    @Test
+    void raw() {
+        byte[] template = "{\"list\":[],\"count\":}".getBytes(StandardCharsets.UTF_8);
+        Json j = new Json()
+                .raw(template, 0, 9)
+                .value("a")
+                .value("b")
+                .raw(template, 9, 10)
+                .value(2)
+                .raw(template, 19, 1);
+        assertEquals("{\"list\":[\"a\",\"b\"],\"count\":2}", j.toString());
+    }
 }
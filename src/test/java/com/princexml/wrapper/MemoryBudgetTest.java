@@ -0,0 +1,52 @@
+package com.princexml.wrapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryBudgetTest {
+    @Test
+    void reserveAndRelease() throws IOException {
+        MemoryBudget budget = new MemoryBudget(100);
+        MemoryBudget.Reservation r = budget.reserve(60);
+        assertEquals(60, budget.getUsed());
+
+        assertTrue(r.tryGrow(40));
+        assertFalse(r.tryGrow(1));
+        r.grow(10);
+        assertEquals(110, budget.getUsed());
+
+        r.close();
+        assertEquals(0, budget.getUsed());
+    }
+
+    @Test
+    void waitThenReject() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100);
+        budget.setMaxWait(5000);
+        MemoryBudget.Reservation r = budget.reserve(80);
+
+        CompletableFuture<MemoryBudget.Reservation> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return budget.reserve(50);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while (budget.getWaitingCount() == 0) {
+            Thread.sleep(1);
+        }
+        r.close();
+        waiting.get().close();
+
+        budget.setMaxWait(0);
+        r = budget.reserve(80);
+        assertThrows(IOException.class, () -> budget.reserve(50));
+        assertThrows(IOException.class, () -> budget.reserve(101));
+        assertEquals(2, budget.getRejectedCount());
+        r.close();
+    }
+}
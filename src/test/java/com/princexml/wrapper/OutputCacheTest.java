@@ -0,0 +1,141 @@
+package com.princexml.wrapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputCacheTest {
+    private static OutputCache.Result result(int pdfSize, boolean success) {
+        byte[] log = (success ? "fin|success\n" : "fin|failure\n").getBytes(StandardCharsets.UTF_8);
+        return new OutputCache.Result(new byte[pdfSize], log);
+    }
+
+    @Test
+    void hitAndMiss() throws IOException {
+        OutputCache cache = new OutputCache(1000);
+        AtomicInteger conversions = new AtomicInteger();
+        OutputCache.Conversion conversion = () -> {
+            conversions.incrementAndGet();
+            return result(100, true);
+        };
+
+        OutputCache.Result first = cache.get("a", conversion);
+        assertSame(first, cache.get("a", conversion));
+        assertEquals(1, conversions.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(112, cache.getSize());
+    }
+
+    @Test
+    void failuresAreNotCached() throws IOException {
+        OutputCache cache = new OutputCache(1000);
+        assertFalse(cache.get("a", () -> result(0, false)).success);
+        assertTrue(cache.get("a", () -> result(0, true)).success);
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void leastRecentlyUsedIsEvicted() throws IOException {
+        OutputCache cache = new OutputCache(300);
+        cache.get("a", () -> result(88, true));
+        cache.get("b", () -> result(88, true));
+        cache.get("c", () -> result(88, true));
+        // Touch "a", so that "b" is the least recently used.
+        cache.get("a", () -> fail("should be cached"));
+        cache.get("d", () -> result(88, true));
+
+        assertEquals(1, cache.getEvictionCount());
+        assertNotNull(cache.lookup("a"));
+        assertNull(cache.lookup("b"));
+        assertEquals(300, cache.getSize());
+
+        // Too large to cache at all.
+        cache.get("e", () -> result(1000, true));
+        assertNull(cache.lookup("e"));
+        assertEquals(3, cache.getEntryCount());
+    }
+
+    @Test
+    void singleFlight() throws Exception {
+        OutputCache cache = new OutputCache(1000);
+        AtomicInteger conversions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            Callable<OutputCache.Result> task = () -> cache.get("a", () -> {
+                conversions.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return result(10, true);
+            });
+            Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(task);
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<?> f : futures) {
+                assertNotNull(f.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, conversions.get());
+        assertEquals(3, cache.getHitCount());
+    }
+
+    @Test
+    void failedSingleFlightIsNotAHit() throws Exception {
+        OutputCache cache = new OutputCache(1000);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            Callable<OutputCache.Result> task = () -> cache.get("a", () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                throw new IOException("boom");
+            });
+            Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(task);
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<?> f : futures) {
+                ExecutionException e = assertThrows(ExecutionException.class,
+                        () -> f.get(10, TimeUnit.SECONDS));
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    void errorsArePropagated() {
+        OutputCache cache = new OutputCache(1000);
+        assertThrows(IOException.class, () -> cache.get("a", () -> {
+            throw new IOException("boom");
+        }));
+        assertEquals(0, cache.getEntryCount());
+    }
+}
@@ -0,0 +1,154 @@
+package com.princexml.wrapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputPublisherTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    static class Collector implements OutputPublisher.Subscriber {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        volatile OutputPublisher.Subscription subscription;
+        volatile int buffers;
+
+        @Override
+        public void onSubscribe(OutputPublisher.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ByteBuffer buffer) {
+            bytes.write(buffer.array(), buffer.position(), buffer.remaining());
+            buffers++;
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    @Test
+    void unboundedDemand() throws Exception {
+        byte[] data = data(1000000);
+        Collector c = new Collector();
+        new OutputPublisher(out -> {
+            out.write(data);
+            return true;
+        }, executor).subscribe(c);
+        c.subscription.request(Long.MAX_VALUE);
+
+        c.done.get(10, TimeUnit.SECONDS);
+        assertArrayEquals(data, c.bytes.toByteArray());
+    }
+
+    @Test
+    void readingPausesWithoutDemand() throws Exception {
+        AtomicLong written = new AtomicLong();
+        Collector c = new Collector();
+        new OutputPublisher(out -> {
+            for (int i = 0; i < 1000; i++) {
+                out.write(new byte[1000]);
+                written.addAndGet(1000);
+            }
+            return true;
+        }, executor).subscribe(c);
+
+        // The ring of 4 buffers fills up and the conversion blocks.
+        Thread.sleep(200);
+        assertTrue(written.get() <= 4 * Util.BUFFER_SIZE + 1000);
+        assertEquals(0, c.buffers);
+
+        c.subscription.request(1);
+        assertEquals(1, c.buffers);
+
+        while (!c.done.isDone()) {
+            c.subscription.request(1);
+            Thread.sleep(1);
+        }
+        c.done.get();
+        assertEquals(1000000, c.bytes.size());
+    }
+
+    @Test
+    void cancelDiscardsOutput() throws Exception {
+        CompletableFuture<Boolean> finished = new CompletableFuture<>();
+        Collector c = new Collector();
+        new OutputPublisher(out -> {
+            out.write(new byte[1000000]);
+            finished.complete(true);
+            return true;
+        }, executor).subscribe(c);
+
+        c.subscription.request(1);
+        c.subscription.cancel();
+        c.subscription.request(1);
+
+        // The conversion runs to the end, but nothing more is delivered.
+        assertTrue(finished.get(10, TimeUnit.SECONDS));
+        assertTrue(c.buffers <= 1);
+        assertFalse(c.done.isDone());
+    }
+
+    @Test
+    void failures() throws Exception {
+        Collector failed = new Collector();
+        new OutputPublisher(out -> false, executor).subscribe(failed);
+        failed.subscription.request(1);
+        Exception e = assertThrows(Exception.class, () -> failed.done.get(10, TimeUnit.SECONDS));
+        assertEquals("conversion failed", e.getCause().getMessage());
+
+        Collector thrown = new Collector();
+        new OutputPublisher(out -> {
+            throw new IOException("broken pipe");
+        }, executor).subscribe(thrown);
+        e = assertThrows(Exception.class, () -> thrown.done.get(10, TimeUnit.SECONDS));
+        assertEquals("broken pipe", e.getCause().getMessage());
+
+        Collector invalid = new Collector();
+        new OutputPublisher(out -> {
+            out.write(1);
+            return true;
+        }, executor).subscribe(invalid);
+        invalid.subscription.request(0);
+        e = assertThrows(Exception.class, () -> invalid.done.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+
+        OutputPublisher publisher = new OutputPublisher(out -> true, executor);
+        publisher.subscribe(new Collector());
+        Collector second = new Collector();
+        publisher.subscribe(second);
+        e = assertThrows(Exception.class, () -> second.done.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+}
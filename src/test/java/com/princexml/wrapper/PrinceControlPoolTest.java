@@ -0,0 +1,400 @@
+package com.princexml.wrapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrinceControlPoolTest {
+    @TempDir
+    Path dir;
+
+    private static boolean convert(PrinceControl control) throws IOException {
+        return control.convert("doc.html", new ByteArrayOutputStream());
+    }
+
+    private static void awaitSize(PrinceControlPool pool, int size) throws InterruptedException {
+        for (int i = 0; i < 500 && (pool.getSize() != size || pool.getStartingCount() > 0); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(size, pool.getSize());
+    }
+
+    @Test
+    void startsMinimumInBackground() throws Exception {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        try (PrinceControlPool pool = new PrinceControlPool(() -> new PrinceControl(princePath), 2, 4)) {
+            awaitSize(pool, 2);
+            assertEquals(2, pool.getIdleCount());
+
+            assertTrue(pool.execute(PrinceControlPoolTest::convert));
+            assertEquals(2, pool.getSize());
+            assertEquals(0, pool.getScaleDownCount());
+        }
+    }
+
+    @Test
+    void growsUnderLoadAndShrinksWhenIdle() throws Exception {
+        String princePath = new PrinceSimulator.Options()
+                .setLatency(300)
+                .createLauncher(dir);
+        List<String> decisions = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try (PrinceControlPool pool = new PrinceControlPool(() -> new PrinceControl(princePath), 0, 3)) {
+            pool.setTargetQueueWait(20);
+            pool.setIdleTimeout(0);
+            pool.setListener(new PrinceControlPool.Listener() {
+                @Override
+                public synchronized void onScaleUp(int size, String reason) {
+                    decisions.add("up " + size);
+                }
+
+                @Override
+                public synchronized void onScaleDown(int size, String reason) {
+                    decisions.add("down " + size);
+                }
+            });
+
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> pool.execute(PrinceControlPoolTest::convert)));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+            assertEquals(3, pool.getScaleUpCount());
+            assertTrue(decisions.contains("up 3"));
+
+            // Idle processes are stopped by the next maintenance run.
+            awaitSize(pool, 0);
+            assertEquals(3, pool.getScaleDownCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void brokenProcessIsReplaced() throws Exception {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        try (PrinceControlPool pool = new PrinceControlPool(() -> new PrinceControl(princePath), 1, 1)) {
+            // A failure that leaves the process usable keeps it.
+            assertThrows(IOException.class, () -> pool.execute(c -> {
+                throw new IOException("output failed");
+            }));
+            assertEquals(0, pool.getScaleDownCount());
+
+            assertThrows(IOException.class, () -> pool.execute(c -> {
+                c.kill();
+                return convert(c);
+            }));
+            assertEquals(1, pool.getScaleDownCount());
+
+            assertTrue(pool.execute(PrinceControlPoolTest::convert));
+            assertEquals(1, pool.getSize());
+        }
+    }
+
+    @Test
+    void hungJobsAreTimedOutAndQuarantined() throws Exception {
+        String princePath = new PrinceSimulator.Options()
+                .setHangProbability(1)
+                .createLauncher(dir);
+        PoisonQuarantine quarantine = new PoisonQuarantine(2);
+        try (PrinceControlPool pool = new PrinceControlPool(() -> new PrinceControl(princePath), 0, 2)) {
+            pool.setJobTimeout(1000);
+            pool.setQuarantine(quarantine);
+            String key = PoisonQuarantine.fingerprint("<p>poison</p>".getBytes("UTF-8"));
+
+            for (int i = 0; i < 2; i++) {
+                IOException e = assertThrows(IOException.class,
+                        () -> pool.execute(key, PrinceControlPoolTest::convert, null));
+                assertEquals("job timed out after 1000 ms", e.getMessage());
+            }
+            assertTrue(quarantine.isQuarantined(key));
+            assertEquals(2, pool.getScaleDownCount());
+
+            // Quarantined documents go to the fallback, or are rejected.
+            assertFalse(pool.execute(key, PrinceControlPoolTest::convert, () -> false));
+            assertThrows(IOException.class, () -> pool.execute(key, PrinceControlPoolTest::convert, null));
+            assertEquals(2, pool.getScaleUpCount());
+
+            quarantine.release(key);
+            assertFalse(quarantine.isQuarantined(key));
+        }
+    }
+
+    @Test
+    void idleProcessesAreProbed() throws Exception {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        try (PrinceControlPool pool = new PrinceControlPool(() -> new PrinceControl(princePath), 1, 1)) {
+            pool.setProbeInterval(1000);
+            for (int i = 0; i < 500 && pool.getProbeCount() == 0; i++) {
+                Thread.sleep(10);
+            }
+            assertTrue(pool.getProbeCount() > 0);
+            assertFalse(Double.isNaN(pool.getProbeLatency()));
+            assertEquals(0, pool.getProbeEvictionCount());
+            assertEquals(1, pool.getSize());
+
+            assertTrue(pool.execute(PrinceControlPoolTest::convert));
+        }
+    }
+
+    @Test
+    void slowProbesEvictProcesses() throws Exception {
+        String princePath = new PrinceSimulator.Options()
+                .setLatency(300)
+                .createLauncher(dir);
+        List<String> reasons = new ArrayList<>();
+        try (PrinceControlPool pool = new PrinceControlPool(() -> new PrinceControl(princePath), 1, 1)) {
+            pool.setProbeInterval(1000);
+            pool.setProbeTimeout(100);
+            pool.setListener(new PrinceControlPool.Listener() {
+                @Override
+                public void onScaleUp(int size, String reason) {
+                }
+
+                @Override
+                public synchronized void onScaleDown(int size, String reason) {
+                    reasons.add(reason);
+                }
+            });
+
+            for (int i = 0; i < 500 && pool.getProbeEvictionCount() == 0; i++) {
+                Thread.sleep(10);
+            }
+            assertTrue(pool.getProbeEvictionCount() > 0);
+            assertTrue(pool.getProbeLatency() >= 100);
+            // The minimum size is restored by the next maintenance run.
+            awaitSize(pool, 1);
+        }
+        assertTrue(reasons.get(0).startsWith("probe"));
+    }
+
+    @Test
+    void regressedProcessesAreEvicted() throws Exception {
+        // Each job of a process takes 300 ms longer than the one before.
+        String princePath = new PrinceSimulator.Options()
+                .setSlowdown(300)
+                .createLauncher(dir);
+        List<String> reasons = Collections.synchronizedList(new ArrayList<>());
+        try (PrinceControlPool pool = new PrinceControlPool(() -> new PrinceControl(princePath), 1, 1)) {
+            pool.setProbeInterval(1000);
+            pool.setListener(new PrinceControlPool.Listener() {
+                @Override
+                public void onScaleUp(int size, String reason) {
+                }
+
+                @Override
+                public void onScaleDown(int size, String reason) {
+                    reasons.add(reason);
+                }
+            });
+
+            for (int i = 0; i < 1000 && reasons.isEmpty(); i++) {
+                Thread.sleep(10);
+            }
+            // Well within the probe timeout, but slower than usual.
+            assertEquals(1, pool.getProbeEvictionCount());
+            assertEquals(2, pool.getProbeCount());
+            assertTrue(reasons.get(0).startsWith("probe took "));
+            assertTrue(reasons.get(0).contains("usually"));
+        }
+    }
+
+    @Test
+    void probesWaitForMemoryBudget() throws Exception {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        MemoryBudget budget = new MemoryBudget(100000);
+        try (PrinceControlPool pool = new PrinceControlPool(() -> {
+            PrinceControl control = new PrinceControl(princePath);
+            control.setMemoryBudget(budget);
+            return control;
+        }, 1, 1)) {
+            pool.setProbeInterval(1000);
+            awaitSize(pool, 1);
+
+            // Probes are skipped while the budget is exhausted.
+            MemoryBudget.Reservation r = budget.reserve(100000);
+            Thread.sleep(2500);
+            assertEquals(0, pool.getProbeCount());
+            assertEquals(1, pool.getSize());
+
+            r.close();
+            for (int i = 0; i < 500 && pool.getProbeCount() == 0; i++) {
+                Thread.sleep(10);
+            }
+            assertTrue(pool.getProbeCount() > 0);
+            assertEquals(0, pool.getProbeEvictionCount());
+            assertEquals(0, budget.getUsed());
+        }
+    }
+
+    @Test
+    void shutdownWaitsForRunningTasks() throws Exception {
+        String princePath = new PrinceSimulator.Options()
+                .setLatency(300)
+                .createLauncher(dir);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        PrinceControlPool pool = new PrinceControlPool(() -> new PrinceControl(princePath), 2, 2);
+
+        try {
+            awaitSize(pool, 2);
+            Future<Boolean> result = executor.submit(() -> pool.execute(PrinceControlPoolTest::convert));
+            Thread.sleep(100);
+
+            assertTrue(pool.shutdown(10000));
+            assertTrue(result.get());
+            assertEquals(0, pool.getSize());
+            assertThrows(RuntimeException.class, () -> pool.execute(PrinceControlPoolTest::convert));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shutdownWaitsForProcessesToExit() throws Exception {
+        String princePath = new PrinceSimulator.Options()
+                .setLatency(300)
+                .setExitDelay(300)
+                .createLauncher(dir);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        PrinceControlPool pool = new PrinceControlPool(() -> new PrinceControl(princePath), 1, 1);
+
+        try {
+            awaitSize(pool, 1);
+            Future<Boolean> result = executor.submit(() -> pool.execute(PrinceControlPoolTest::convert));
+            Thread.sleep(100);
+
+            // The rest of the task, and then the process exiting.
+            long start = System.nanoTime();
+            assertTrue(pool.shutdown(10000));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 400);
+            assertTrue(result.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shutdownStopsIdleProcessesWithinTimeout() throws Exception {
+        String princePath = new PrinceSimulator.Options()
+                .setExitDelay(10000)
+                .createLauncher(dir);
+        PrinceControlPool pool = new PrinceControlPool(() -> new PrinceControl(princePath), 3, 3);
+        awaitSize(pool, 3);
+        while (pool.getStartingCount() > 0) {
+            Thread.sleep(10);
+        }
+
+        long start = System.nanoTime();
+        assertFalse(pool.shutdown(300));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        assertEquals(0, pool.getSize());
+    }
+
+    @Test
+    void shutdownKillsHungTasks() throws Exception {
+        String princePath = new PrinceSimulator.Options()
+                .setHangProbability(1)
+                .createLauncher(dir);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        PrinceControlPool pool = new PrinceControlPool(() -> new PrinceControl(princePath), 1, 1);
+
+        try {
+            awaitSize(pool, 1);
+            Future<Boolean> result = executor.submit(() -> pool.execute(PrinceControlPoolTest::convert));
+            Thread.sleep(100);
+
+            assertFalse(pool.shutdown(200));
+            ExecutionException e = assertThrows(ExecutionException.class, result::get);
+            assertTrue(e.getCause() instanceof IOException);
+            awaitSize(pool, 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void jobTimeoutIsNotDelayedByScaling() throws Exception {
+        String princePath = new PrinceSimulator.Options()
+                .setHangProbability(1)
+                .createLauncher(dir);
+        CountDownLatch scalingDown = new CountDownLatch(1);
+        try (PrinceControlPool pool = new PrinceControlPool(() -> new PrinceControl(princePath), 0, 2)) {
+            pool.setIdleTimeout(0);
+            pool.setJobTimeout(1000);
+            pool.setListener(new PrinceControlPool.Listener() {
+                @Override
+                public void onScaleUp(int size, String reason) {
+                }
+
+                @Override
+                public void onScaleDown(int size, String reason) {
+                    if (scalingDown.getCount() > 0) {
+                        scalingDown.countDown();
+                        // Hold up the maintenance thread.
+                        try {
+                            Thread.sleep(4000);
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
+                }
+            });
+
+            assertEquals("ok", pool.execute(c -> "ok"));
+            scalingDown.await();
+
+            long start = System.nanoTime();
+            IOException e = assertThrows(IOException.class, () -> pool.execute(PrinceControlPoolTest::convert));
+            assertEquals("job timed out after 1000 ms", e.getMessage());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 3000);
+        }
+    }
+
+    @Test
+    void validationErrorsAreNotQuarantined() throws Exception {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        PoisonQuarantine quarantine = new PoisonQuarantine(1);
+        try (PrinceControlPool pool = new PrinceControlPool(() -> new PrinceControl(princePath), 1, 1)) {
+            pool.setQuarantine(quarantine);
+            String key = PoisonQuarantine.fingerprint("<p>valid</p>".getBytes("UTF-8"));
+
+            // Rejected by the wrapper before anything reaches the process.
+            assertThrows(RuntimeException.class, () -> pool.execute(key,
+                    c -> c.convert(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream()), null));
+            assertFalse(quarantine.isQuarantined(key));
+            assertEquals(0, pool.getScaleDownCount());
+
+            assertTrue(pool.execute(key, PrinceControlPoolTest::convert, null));
+        }
+    }
+
+    @Test
+    void startFailure() throws Exception {
+        try (PrinceControlPool pool = new PrinceControlPool(
+                () -> new PrinceControl(dir.resolve("missing").toString()), 0, 1)) {
+            IOException e = assertThrows(IOException.class, () -> pool.execute(PrinceControlPoolTest::convert));
+            assertEquals("failed to start control process", e.getMessage());
+        }
+
+        PrinceControlPool closed = new PrinceControlPool(() -> null, 0, 1);
+        closed.close();
+        assertThrows(RuntimeException.class, () -> closed.execute(PrinceControlPoolTest::convert));
+    }
+}
@@ -97,6 +97,11 @@ class PrinceControlTest {
             }
         }
 
+        @Test
+        void testConvertToPath() throws IOException {
+            assertTrue(p.convert(INPUT_PATH, Paths.get(RESOURCES_DIR + "control-converttopath.pdf")), e.message);
+        }
+
         // Check JSON.
         @Test
         void testJobOptionKeys() throws IOException {
@@ -0,0 +1,85 @@
+package com.princexml.wrapper;
+
+import com.princexml.wrapper.PrinceRouter.Engine;
+import com.princexml.wrapper.enums.InputType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrinceRouterTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void learnsTheFasterEngine() throws Exception {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        Prince prince = new Prince(princePath);
+        prince.setInputType(InputType.HTML);
+
+        try (PrinceControlPool pool = new PrinceControlPool(() -> {
+            PrinceControl control = new PrinceControl(princePath);
+            control.setInputType(InputType.HTML);
+            return control;
+        }, 1, 1)) {
+            while (pool.getIdleCount() == 0) {
+                Thread.sleep(10);
+            }
+            PrinceRouter router = new PrinceRouter(prince, pool);
+            byte[] input = "<p>invoice</p>".getBytes("UTF-8");
+
+            // Each engine is tried once, then the warm control process wins,
+            // as the one-shot process has to start every time.
+            for (int i = 0; i < 6; i++) {
+                ByteArrayOutputStream os = new ByteArrayOutputStream();
+                assertTrue(router.convert(input, os));
+                assertEquals(1024, os.size());
+            }
+            assertEquals(1, router.getCount(Engine.ONE_SHOT));
+            assertEquals(5, router.getCount(Engine.CONTROL));
+            assertTrue(router.getEstimate(Engine.CONTROL, input.length)
+                    < router.getEstimate(Engine.ONE_SHOT, input.length));
+            assertTrue(Double.isNaN(router.getEstimate(Engine.CONTROL, 1000000)));
+
+            // Remaps are only supported by one-shot processes.
+            prince.addRemap("http://example.com/", dir.toString());
+            assertTrue(router.convert(input, new ByteArrayOutputStream()));
+            assertEquals(2, router.getCount(Engine.ONE_SHOT));
+        }
+    }
+
+    @Test
+    void avoidsAFailingEngine() throws Exception {
+        Prince prince = new Prince(new PrinceSimulator.Options().createLauncher(dir));
+        prince.setInputType(InputType.HTML);
+        String failingPath = new PrinceSimulator.Options()
+                .setFailProbability(1)
+                .createLauncher(dir);
+
+        try (PrinceControlPool pool = new PrinceControlPool(() -> {
+            PrinceControl control = new PrinceControl(failingPath);
+            control.setInputType(InputType.HTML);
+            return control;
+        }, 1, 1)) {
+            PrinceRouter router = new PrinceRouter(prince, pool);
+            byte[] input = "<p>invoice</p>".getBytes("UTF-8");
+
+            // The control process fails, then the one-shot process is tried,
+            // and the control process fails again once it is compared with
+            // the one-shot process. After that, the one-shot process is used.
+            int successes = 0;
+            for (int i = 0; i < 8; i++) {
+                if (router.convert(input, new ByteArrayOutputStream())) {
+                    successes++;
+                }
+            }
+            assertTrue(router.getCount(Engine.CONTROL) <= 2, "" + router.getCount(Engine.CONTROL));
+            assertEquals(8 - router.getCount(Engine.CONTROL), successes);
+            assertTrue(router.getEstimate(Engine.CONTROL, input.length)
+                    > router.getEstimate(Engine.ONE_SHOT, input.length));
+        }
+    }
+}
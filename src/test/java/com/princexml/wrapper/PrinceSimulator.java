@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2026 YesLogic Pty. Ltd.
+ * All rights reserved.
+ */
+
+package com.princexml.wrapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A fake Prince executable that speaks the control protocol and the
+ * structured log format, so that the wrapper can be tested and benchmarked
+ * without a licensed Prince installation.
+ * <p>
+ * The simulator is launched through a script created by
+ * {@link Options#createLauncher(Path)}, whose path is then passed to
+ * {@link Prince} or {@link PrinceControl} as the Prince executable. Its
+ * behaviour is configured through system properties baked into the script:
+ * <ul>
+ *     <li>{@code prince.sim.version}: version reported in the {@code ver} chunk.</li>
+ *     <li>{@code prince.sim.latency}: render latency per job in milliseconds.</li>
+ *     <li>{@code prince.sim.slowdown}: latency added for each earlier job of
+ *     the process, in milliseconds, as for a process that degrades.</li>
+ *     <li>{@code prince.sim.exitDelay}: delay before exiting when asked to
+ *     end, in milliseconds.</li>
+ *     <li>{@code prince.sim.outputSize}: size of the generated PDF in bytes.</li>
+ *     <li>{@code prince.sim.messages}: number of log messages per job.</li>
+ *     <li>{@code prince.sim.failProbability}: chance of a job failing cleanly.</li>
+ *     <li>{@code prince.sim.crashProbability}: chance of exiting mid-job.</li>
+ *     <li>{@code prince.sim.hangProbability}: chance of never answering a job.</li>
+ *     <li>{@code prince.sim.seed}: seed for the crash and hang decisions.</li>
+ * </ul>
+ */
+public final class PrinceSimulator {
+    private static final Pattern RESOURCE_COUNT = Pattern.compile("\"job-resource-count\":(\\d+)");
+
+    private final String version = System.getProperty("prince.sim.version", "16.1");
+    private final long latency = Long.getLong("prince.sim.latency", 0);
+    private final long slowdown = Long.getLong("prince.sim.slowdown", 0);
+    private final long exitDelay = Long.getLong("prince.sim.exitDelay", 0);
+    private final int outputSize = Integer.getInteger("prince.sim.outputSize", 1024);
+    private final int messages = Integer.getInteger("prince.sim.messages", 1);
+    private final double failProbability = Double.parseDouble(System.getProperty("prince.sim.failProbability", "0"));
+    private final double crashProbability = Double.parseDouble(System.getProperty("prince.sim.crashProbability", "0"));
+    private final double hangProbability = Double.parseDouble(System.getProperty("prince.sim.hangProbability", "0"));
+    private final Random random = new Random(Long.getLong("prince.sim.seed", 0));
+    private int jobs;
+
+    private PrinceSimulator() {}
+
+    public static void main(String[] args) throws Exception {
+        PrinceSimulator sim = new PrinceSimulator();
+
+        boolean control = false;
+        String structuredLog = null;
+        String output = null;
+        String rasterOutput = null;
+        boolean stdin = false;
+        List<String> inputs = new ArrayList<>();
+
+        for (String arg : args) {
+            if (arg.equals("--control")) {
+                control = true;
+            } else if (arg.startsWith("--structured-log=")) {
+                structuredLog = arg.substring("--structured-log=".length());
+            } else if (arg.startsWith("--output=")) {
+                output = arg.substring("--output=".length());
+            } else if (arg.startsWith("--raster-output=")) {
+                rasterOutput = arg.substring("--raster-output=".length());
+            } else if (arg.equals("-")) {
+                stdin = true;
+            } else if (!arg.startsWith("--")) {
+                inputs.add(arg);
+            }
+        }
+
+        if (control) {
+            sim.runControl(new BufferedInputStream(System.in), new BufferedOutputStream(System.out));
+        } else {
+            sim.runOnce(inputs, stdin, output != null ? output : rasterOutput, structuredLog != null);
+        }
+    }
+
+    private void runControl(InputStream in, OutputStream out) throws Exception {
+        writeChunk(out, "ver", version.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+
+        while (true) {
+            String tag = readTag(in);
+            byte[] data = readData(in);
+
+            if (tag.equals("end")) {
+                Thread.sleep(exitDelay);
+                return;
+            }
+            if (!tag.equals("job")) {
+                writeChunk(out, "err", ("unexpected chunk: " + tag).getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                continue;
+            }
+
+            Matcher m = RESOURCE_COUNT.matcher(new String(data, StandardCharsets.UTF_8));
+            int resourceCount = m.find() ? Integer.parseInt(m.group(1)) : 0;
+            for (int i = 0; i < resourceCount; i++) {
+                if (!readTag(in).equals("dat")) {
+                    throw new IOException("expected dat chunk");
+                }
+                readData(in);
+            }
+
+            boolean success = render();
+
+            if (success) {
+                writeChunk(out, "pdf", pdf());
+            }
+            writeChunk(out, "log", ("dat|job-resource-count|" + resourceCount + "\n" + log(success))
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    private void runOnce(List<String> inputs, boolean stdin, String output, boolean structured) throws Exception {
+        if (stdin) {
+            Util.copyInputToOutput(System.in, new ByteArrayOutputStream());
+        }
+
+        boolean success = render();
+
+        if (output == null && !inputs.isEmpty()) {
+            output = inputs.get(0).replaceFirst("\\.[^./\\\\]*$", "") + ".pdf";
+        }
+        if (!success) {
+            System.out.close();
+        } else if (output == null || output.equals("-")) {
+            System.out.write(pdf());
+            System.out.flush();
+            System.out.close();
+        } else {
+            Files.write(Paths.get(output), pdf());
+        }
+
+        if (structured) {
+            System.err.print(log(success));
+        } else {
+            for (int i = 0; i < messages; i++) {
+                System.err.println("prince: warning: simulated warning " + i);
+            }
+        }
+        System.err.flush();
+    }
+
+    private boolean render() throws InterruptedException {
+        double r = random.nextDouble();
+        if (r < crashProbability) {
+            System.err.println("prince: error: simulated crash");
+            System.err.flush();
+            Runtime.getRuntime().halt(3);
+        }
+        if (r < crashProbability + hangProbability) {
+            Thread.sleep(Long.MAX_VALUE);
+        }
+        long delay = latency + slowdown * jobs++;
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+        return r >= crashProbability + hangProbability + failProbability;
+    }
+
+    private byte[] pdf() {
+        byte[] header = "%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] trailer = "%%EOF\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] pdf = new byte[Math.max(outputSize, header.length + trailer.length)];
+
+        for (int i = 0; i < pdf.length; i++) {
+            pdf[i] = (byte) ('a' + i % 26);
+        }
+        System.arraycopy(header, 0, pdf, 0, header.length);
+        System.arraycopy(trailer, 0, pdf, pdf.length - trailer.length, trailer.length);
+
+        return pdf;
+    }
+
+    private String log(boolean success) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < messages; i++) {
+            sb.append("msg|wrn|simulator.html:").append(i + 1).append("|simulated warning ").append(i).append('\n');
+        }
+        sb.append(success ? "fin|success\n" : "fin|failure\n");
+        return sb.toString();
+    }
+
+    private static String readTag(InputStream in) throws IOException {
+        byte[] tag = new byte[3];
+        if (!Chunk.readBytes(in, tag) || in.read() != ' ') {
+            throw new EOFException("control connection closed");
+        }
+        return new String(tag, StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] readData(InputStream in) throws IOException {
+        int length = 0;
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < '0' || b > '9') {
+                throw new IOException("invalid chunk length");
+            }
+            length = length * 10 + b - '0';
+        }
+
+        byte[] data = new byte[length];
+        if (!Chunk.readBytes(in, data) || in.read() != '\n') {
+            throw new IOException("truncated chunk");
+        }
+        return data;
+    }
+
+    private static void writeChunk(OutputStream out, String tag, byte[] data) throws IOException {
+        out.write((tag + " " + data.length + "\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(data);
+        out.write('\n');
+    }
+
+    /**
+     * Settings for a simulator launcher script.
+     */
+    public static final class Options {
+        private String version = "16.1";
+        private long latency;
+        private long slowdown;
+        private long exitDelay;
+        private int outputSize = 1024;
+        private int messages = 1;
+        private double failProbability;
+        private double crashProbability;
+        private double hangProbability;
+        private long seed;
+
+        public Options setVersion(String version) {
+            this.version = version;
+            return this;
+        }
+
+        public Options setLatency(long latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        public Options setSlowdown(long slowdown) {
+            this.slowdown = slowdown;
+            return this;
+        }
+
+        public Options setExitDelay(long exitDelay) {
+            this.exitDelay = exitDelay;
+            return this;
+        }
+
+        public Options setOutputSize(int outputSize) {
+            this.outputSize = outputSize;
+            return this;
+        }
+
+        public Options setMessages(int messages) {
+            this.messages = messages;
+            return this;
+        }
+
+        public Options setFailProbability(double failProbability) {
+            this.failProbability = failProbability;
+            return this;
+        }
+
+        public Options setCrashProbability(double crashProbability) {
+            this.crashProbability = crashProbability;
+            return this;
+        }
+
+        public Options setHangProbability(double hangProbability) {
+            this.hangProbability = hangProbability;
+            return this;
+        }
+
+        public Options setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Create a launcher script in {@code dir} that starts the simulator
+         * with these options.
+         * @param dir The directory to create the script in.
+         * @return The path of the script, to be used as the Prince executable.
+         * @throws IOException If an I/O error occurs.
+         */
+        public String createLauncher(Path dir) throws IOException {
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+            String props = "-Dprince.sim.version=" + version +
+                    " -Dprince.sim.latency=" + latency +
+                    " -Dprince.sim.slowdown=" + slowdown +
+                    " -Dprince.sim.exitDelay=" + exitDelay +
+                    " -Dprince.sim.outputSize=" + outputSize +
+                    " -Dprince.sim.messages=" + messages +
+                    " -Dprince.sim.failProbability=" + failProbability +
+                    " -Dprince.sim.crashProbability=" + crashProbability +
+                    " -Dprince.sim.hangProbability=" + hangProbability +
+                    " -Dprince.sim.seed=" + seed;
+            String main = PrinceSimulator.class.getName();
+
+            Path script;
+            if (File.separatorChar == '\\') {
+                script = Files.createTempFile(dir, "prince-sim", ".cmd");
+                Files.write(script, ("@\"" + java + "\" -cp \"" + classPath + "\" " + props + " " + main + " %*\r\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            } else {
+                script = Files.createTempFile(dir, "prince-sim", ".sh");
+                Files.write(script, ("#!/bin/sh\nexec '" + java + "' -Xshare:auto -XX:TieredStopAtLevel=1 -cp '" +
+                        classPath + "' " + props + " " + main + " \"$@\"\n").getBytes(StandardCharsets.UTF_8));
+                if (!script.toFile().setExecutable(true)) {
+                    throw new IOException("failed to make launcher executable");
+                }
+            }
+            return script.toString();
+        }
+    }
+}
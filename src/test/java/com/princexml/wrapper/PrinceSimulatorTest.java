@@ -0,0 +1,663 @@
+package com.princexml.wrapper;
+
+import com.princexml.wrapper.enums.InputType;
+import com.princexml.wrapper.enums.JobFeature;
+import com.princexml.wrapper.enums.PdfEvent;
+import com.princexml.wrapper.events.MessageType;
+import com.princexml.wrapper.events.PrinceEvents;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.dom.DOMSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrinceSimulatorTest {
+    static class Events implements PrinceEvents {
+        int messages;
+        String resourceCount;
+
+        @Override
+        public void onMessage(MessageType msgType, String msgLocation, String msgText) {
+            messages++;
+        }
+
+        @Override
+        public void onDataMessage(String name, String value) {
+            if (name.equals("job-resource-count")) {
+                resourceCount = value;
+            }
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testPrinceConvert() throws IOException {
+        String princePath = new PrinceSimulator.Options()
+                .setOutputSize(5000)
+                .setMessages(3)
+                .createLauncher(dir);
+        Events e = new Events();
+        Prince p = new Prince(princePath, e);
+        p.setInputType(InputType.HTML);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        assertTrue(p.convert(new ByteArrayInputStream("<p>x</p>".getBytes(StandardCharsets.UTF_8)), os));
+        assertEquals(5000, os.size());
+        assertTrue(os.toString("US-ASCII").startsWith("%PDF-"));
+        assertEquals(3, e.messages);
+    }
+
+    @Test
+    void testPrinceConvertToFile() throws IOException {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        Path input = Files.write(dir.resolve("doc.html"), "<p>x</p>".getBytes(StandardCharsets.UTF_8));
+        Prince p = new Prince(princePath);
+
+        assertTrue(p.convert(input.toString()));
+        assertEquals(1024, Files.size(dir.resolve("doc.pdf")));
+    }
+
+    @Test
+    void testControlConvert() throws IOException {
+        String princePath = new PrinceSimulator.Options()
+                .setVersion("15.4")
+                .setOutputSize(2048)
+                .setMessages(2)
+                .createLauncher(dir);
+        Events e = new Events();
+        PrinceControl p = new PrinceControl(princePath, e);
+        p.setInputType(InputType.HTML);
+        p.addStyleSheet("p { color: red }".getBytes(StandardCharsets.UTF_8));
+        p.start();
+
+        try {
+            assertEquals("15.4", p.getVersion());
+            for (int i = 0; i < 3; i++) {
+                ByteArrayOutputStream os = new ByteArrayOutputStream();
+                assertTrue(p.convertString("<p>x</p>", os));
+                assertEquals(2048, os.size());
+                // The style sheet plus this job's input only.
+                assertEquals("2", e.resourceCount);
+            }
+            assertEquals(6, e.messages);
+        } finally {
+            p.stop();
+        }
+    }
+
+    @Test
+    void testControlFileResources() throws IOException {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        Path css = Files.write(dir.resolve("style.css"), "p { color: red }".getBytes(StandardCharsets.UTF_8));
+        Path js = Files.write(dir.resolve("script.js"), "console.log(1)".getBytes(StandardCharsets.UTF_8));
+        Events e = new Events();
+        PrinceControl p = new PrinceControl(princePath, e);
+        p.addStyleSheet(css);
+        p.addScript(js);
+        p.addFileAttachment(css, "style.css", "Style sheet");
+        p.start();
+
+        try {
+            assertTrue(p.convert("doc.html", new ByteArrayOutputStream()));
+            assertEquals("3", e.resourceCount);
+
+            // Files are read again for each job.
+            Files.write(css, "p { color: blue }".getBytes(StandardCharsets.UTF_8));
+            assertTrue(p.convert("doc.html", new ByteArrayOutputStream()));
+            assertEquals("3", e.resourceCount);
+        } finally {
+            p.stop();
+        }
+    }
+
+    @Test
+    void testControlSuppliedResources() throws IOException {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        byte[] css = "p { color: red }".getBytes(StandardCharsets.UTF_8);
+        byte[] html = "<p>x</p>".getBytes(StandardCharsets.UTF_8);
+        byte[] js = "app.alert(1)".getBytes(StandardCharsets.UTF_8);
+        AtomicInteger opened = new AtomicInteger();
+        Events e = new Events();
+        PrinceControl p = new PrinceControl(princePath, e);
+        p.setInputType(InputType.HTML);
+        p.addStyleSheet(() -> {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(css);
+        }, css.length);
+        p.setPdfScript(() -> new ByteArrayInputStream(js), js.length);
+        p.addPdfEventScript(PdfEvent.WILL_CLOSE, () -> new ByteArrayInputStream(js), js.length);
+        assertEquals(0, opened.get());
+        p.start();
+
+        try {
+            for (int i = 1; i <= 2; i++) {
+                assertTrue(p.convert(() -> new ByteArrayInputStream(html), html.length, new ByteArrayOutputStream()));
+                assertEquals("4", e.resourceCount);
+                assertEquals(i, opened.get());
+            }
+        } finally {
+            p.stop();
+        }
+    }
+
+    @Test
+    void testControlCapabilities() throws IOException {
+        String princePath = new PrinceSimulator.Options()
+                .setVersion("14.2")
+                .createLauncher(dir);
+        AtomicInteger resolved = new AtomicInteger();
+        Function<String, Set<JobFeature>> resolver = version -> {
+            resolved.incrementAndGet();
+            return version.startsWith("14.")
+                    ? EnumSet.complementOf(EnumSet.of(JobFeature.IFRAMES))
+                    : EnumSet.allOf(JobFeature.class);
+        };
+
+        PrinceControl p = new PrinceControl(princePath);
+        p.setCapabilityResolver(resolver);
+        assertNull(p.getSupportedFeatures());
+        p.start();
+
+        try {
+            assertFalse(p.getSupportedFeatures().contains(JobFeature.IFRAMES));
+            assertFalse(p.getJobJson().toString().contains("\"iframes\""));
+            assertTrue(p.getJobJson().toString().contains("\"pdf-forms\""));
+
+            p.setIframes(true);
+            assertThrows(RuntimeException.class, () -> p.convert("doc.html", new ByteArrayOutputStream()));
+
+            // Nothing was sent, so the process is still usable.
+            p.setIframes(false);
+            assertTrue(p.convert("doc.html", new ByteArrayOutputStream()));
+        } finally {
+            p.stop();
+        }
+
+        // Another process for the same executable reuses the result.
+        PrinceControl q = new PrinceControl(princePath);
+        q.setCapabilityResolver(resolver);
+        q.start();
+        try {
+            assertFalse(q.getSupportedFeatures().contains(JobFeature.IFRAMES));
+        } finally {
+            q.stop();
+        }
+        assertEquals(1, resolved.get());
+    }
+
+    @Test
+    void testControlProbeIsMinimal() throws IOException {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        Events e = new Events();
+        PrinceControl p = new PrinceControl(princePath, e);
+        p.addStyleSheet(new byte[100000]);
+        // Only room for the probe's output buffer.
+        p.setMemoryBudget(new MemoryBudget(Util.BUFFER_SIZE + 1000));
+        p.start();
+
+        try {
+            assertTrue(p.probe());
+            assertEquals("0", e.resourceCount);
+        } finally {
+            p.stop();
+        }
+    }
+
+    @Test
+    void testPrinceOutputCache() throws IOException {
+        String princePath = new PrinceSimulator.Options()
+                .setMessages(2)
+                .createLauncher(dir);
+        OutputCache cache = new OutputCache(1 << 20);
+        Events e = new Events();
+        Prince p = new Prince(princePath, e);
+        p.setInputType(InputType.HTML);
+        p.setOutputCache(cache);
+
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            assertTrue(p.convertString("<p>x</p>", os));
+            assertEquals(1024, os.size());
+        }
+        // Messages are replayed on a hit.
+        assertEquals(4, e.messages);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        assertTrue(p.convertString("<p>y</p>", new ByteArrayOutputStream()));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void testControlOutputCache() throws IOException {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        Path css = Files.write(dir.resolve("style.css"), "p { color: red }".getBytes(StandardCharsets.UTF_8));
+        Path output = dir.resolve("doc.pdf");
+        OutputCache cache = new OutputCache(1 << 20);
+        Events e = new Events();
+        PrinceControl p = new PrinceControl(princePath, e);
+        p.addStyleSheet(css.toString());
+        p.setOutputCache(cache);
+        p.start();
+
+        try {
+            assertTrue(p.convert("doc.html", new ByteArrayOutputStream()));
+            assertTrue(p.convert("doc.html", output));
+            assertEquals(1024, Files.size(output));
+            assertEquals("0", e.resourceCount);
+            assertEquals(1, cache.getHitCount());
+
+            // The content of referenced local files is part of the key.
+            Files.write(css, "p { color: blue }".getBytes(StandardCharsets.UTF_8));
+            assertTrue(p.convert("doc.html", new ByteArrayOutputStream()));
+            assertEquals(2, cache.getMissCount());
+
+            // Including files given as file: URLs.
+            Path script = Files.write(dir.resolve("script.js"), "var a;".getBytes(StandardCharsets.UTF_8));
+            p.addScript(script.toUri().toString());
+            assertTrue(p.convert("doc.html", new ByteArrayOutputStream()));
+            Files.write(script, "var b;".getBytes(StandardCharsets.UTF_8));
+            assertTrue(p.convert("doc.html", new ByteArrayOutputStream()));
+            assertEquals(4, cache.getMissCount());
+        } finally {
+            p.stop();
+        }
+    }
+
+    @Test
+    void testPrinceConvertProducer() throws IOException {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        Prince p = new Prince(princePath);
+        p.setInputType(InputType.HTML);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        assertTrue(p.convert(w -> {
+            for (int i = 0; i < 10000; i++) {
+                w.write("<p>paragraph " + i + "</p>\n");
+            }
+        }, os));
+        assertEquals(1024, os.size());
+
+        assertThrows(IOException.class, () -> p.convert(w -> {
+            throw new IOException("template failed");
+        }, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void testControlConvertProducer() throws IOException {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        Path spillDir = Files.createDirectory(dir.resolve("spill"));
+        Events e = new Events();
+        PrinceControl p = new PrinceControl(princePath, e);
+        p.setInputType(InputType.HTML);
+        p.setChunkMemoryThreshold(1000);
+        p.setChunkSpillDirectory(spillDir);
+        p.start();
+
+        try {
+            // Small enough to stay in memory, then large enough to spill.
+            for (int n : new int[] {10, 10000}) {
+                assertTrue(p.convert(w -> {
+                    for (int i = 0; i < n; i++) {
+                        w.write("<p>paragraph " + i + "</p>\n");
+                    }
+                }, new ByteArrayOutputStream()));
+                assertEquals("1", e.resourceCount);
+            }
+
+            assertThrows(IOException.class, () -> p.convert(w -> {
+                w.write(new char[5000]);
+                throw new IOException("template failed");
+            }, new ByteArrayOutputStream()));
+
+            try (Stream<Path> files = Files.list(spillDir)) {
+                assertEquals(0, files.count());
+            }
+        } finally {
+            p.stop();
+        }
+    }
+
+    @Test
+    void testControlConcurrentConverts() throws Exception {
+        String princePath = new PrinceSimulator.Options().setLatency(5).createLauncher(dir);
+        List<String> resourceCounts = Collections.synchronizedList(new ArrayList<>());
+        PrinceControl p = new PrinceControl(princePath, new Events() {
+            @Override
+            public void onDataMessage(String name, String value) {
+                if (name.equals("job-resource-count")) {
+                    resourceCounts.add(value);
+                }
+            }
+        });
+        p.setInputType(InputType.HTML);
+        p.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(executor.submit(() -> p.convertString("<p>x</p>", new ByteArrayOutputStream())));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+            // Each job only carries its own document.
+            assertEquals(Collections.nCopies(20, "1"), resourceCounts);
+        } finally {
+            executor.shutdownNow();
+            p.stop();
+        }
+    }
+
+    @Test
+    void testControlConvertSource() throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element root = doc.createElement("catalogue");
+        root.setAttribute("title", "Caf\u00e9 & co");
+        doc.appendChild(root);
+        DOMSource source = new DOMSource(doc);
+
+        StringWriter sw = new StringWriter();
+        AbstractPrince.serialize(source, sw);
+        assertTrue(sw.toString().startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\""));
+        assertTrue(sw.toString().contains("<catalogue title=\"Caf\u00e9 &amp; co\"/>"));
+
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        Events e = new Events();
+        PrinceControl p = new PrinceControl(princePath, e);
+        p.setInputType(InputType.XML);
+        p.start();
+
+        try {
+            assertTrue(p.convert(source, new ByteArrayOutputStream()));
+            assertEquals("1", e.resourceCount);
+        } finally {
+            p.stop();
+        }
+    }
+
+    @Test
+    void testControlSpill() throws IOException {
+        String princePath = new PrinceSimulator.Options()
+                .setOutputSize(100000)
+                .createLauncher(dir);
+        Path spillDir = Files.createDirectory(dir.resolve("spill"));
+        PrinceControl p = new PrinceControl(princePath);
+        p.setChunkMemoryThreshold(1000);
+        p.setChunkSpillDirectory(spillDir);
+        p.start();
+
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            assertTrue(p.convert("doc.html", os));
+            assertEquals(100000, os.size());
+            try (Stream<Path> files = Files.list(spillDir)) {
+                assertEquals(0, files.count());
+            }
+        } finally {
+            p.stop();
+        }
+    }
+
+    @Test
+    void testControlConvertToPath() throws IOException {
+        String princePath = new PrinceSimulator.Options()
+                .setOutputSize(3000)
+                .createLauncher(dir);
+        Path outDir = Files.createDirectory(dir.resolve("out"));
+        Path output = outDir.resolve("doc.pdf");
+        PrinceControl p = new PrinceControl(princePath);
+        p.start();
+
+        try {
+            assertTrue(p.convert("doc.html", output));
+            assertEquals(3000, Files.size(output));
+
+            p.setInputType(InputType.HTML);
+            assertTrue(p.convertString("<p>x</p>", output));
+            assertEquals(3000, Files.size(output));
+            try (Stream<Path> files = Files.list(outDir)) {
+                assertEquals(1, files.count());
+            }
+        } finally {
+            p.stop();
+        }
+    }
+
+    @Test
+    void testControlConvertToPathFailure() throws IOException {
+        String princePath = new PrinceSimulator.Options()
+                .setFailProbability(1)
+                .createLauncher(dir);
+        Path outDir = Files.createDirectory(dir.resolve("out"));
+        Path output = Files.write(outDir.resolve("doc.pdf"), new byte[] {1, 2, 3});
+        PrinceControl p = new PrinceControl(princePath);
+        p.start();
+
+        try {
+            assertFalse(p.convert("doc.html", output));
+            // The previous output is left untouched.
+            assertEquals(3, Files.size(output));
+            try (Stream<Path> files = Files.list(outDir)) {
+                assertEquals(1, files.count());
+            }
+        } finally {
+            p.stop();
+        }
+    }
+
+    @Test
+    void testPublisher() throws Exception {
+        String princePath = new PrinceSimulator.Options()
+                .setOutputSize(1000000)
+                .createLauncher(dir);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Prince prince = new Prince(princePath);
+        PrinceControl control = new PrinceControl(princePath);
+        control.start();
+
+        try {
+            OutputPublisherTest.Collector c = new OutputPublisherTest.Collector();
+            new OutputPublisher(out -> prince.convert("doc.html", out), executor).subscribe(c);
+            while (!c.done.isDone()) {
+                c.subscription.request(1);
+                Thread.sleep(1);
+            }
+            c.done.get();
+            assertEquals(1000000, c.bytes.size());
+
+            c = new OutputPublisherTest.Collector();
+            new OutputPublisher(out -> control.convert("doc.html", out), executor).subscribe(c);
+            c.subscription.request(Long.MAX_VALUE);
+            c.done.get(10, TimeUnit.SECONDS);
+            assertEquals(1000000, c.bytes.size());
+        } finally {
+            control.stop();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testControlMemoryBudget() throws IOException {
+        String princePath = new PrinceSimulator.Options()
+                .setOutputSize(100000)
+                .createLauncher(dir);
+        Path spillDir = Files.createDirectory(dir.resolve("spill"));
+        MemoryBudget budget = new MemoryBudget(50000);
+        budget.setMaxWait(0);
+        PrinceControl p = new PrinceControl(princePath);
+        p.setInputType(InputType.HTML);
+        p.setChunkSpillDirectory(spillDir);
+        p.setMemoryBudget(budget);
+        p.start();
+
+        try {
+            // Neither the input nor the PDF fit, so both are spilled.
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] input = new byte[80000];
+            assertTrue(p.convert(new ByteArrayInputStream(input), os));
+            assertEquals(100000, os.size());
+            assertEquals(0, budget.getUsed());
+            try (Stream<Path> files = Files.list(spillDir)) {
+                assertEquals(0, files.count());
+            }
+
+            p.addStyleSheet(new byte[60000]);
+            assertThrows(IOException.class, () -> p.convert("doc.html", new ByteArrayOutputStream()));
+            assertEquals(1, budget.getRejectedCount());
+            assertEquals(0, budget.getUsed());
+        } finally {
+            p.stop();
+        }
+    }
+
+    @Test
+    void testPrinceCachedMemoryBudget() throws IOException {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        MemoryBudget budget = new MemoryBudget(50000);
+        budget.setMaxWait(0);
+        OutputCache cache = new OutputCache(1 << 20);
+        Prince p = new Prince(princePath);
+        p.setInputType(InputType.HTML);
+        p.setOutputCache(cache);
+        p.setMemoryBudget(budget);
+
+        // The input is larger than the budget, so it is spilled to a
+        // temporary file while it is read rather than rejected.
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            assertTrue(p.convert(new ByteArrayInputStream(new byte[80000]), os));
+            assertEquals(1024, os.size());
+        }
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, budget.getRejectedCount());
+        assertEquals(0, budget.getUsed());
+    }
+
+    @Test
+    void testPrinceStandby() throws Exception {
+        String princePath = new PrinceSimulator.Options().createLauncher(dir);
+        Prince p = new Prince(princePath);
+        p.setInputType(InputType.HTML);
+        p.setStandbyCount(2);
+
+        try {
+            awaitStandby(p, 2);
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            assertTrue(p.convertString("<p>standby</p>", os));
+            assertEquals(1024, os.size());
+            awaitStandby(p, 2);
+
+            // A different command line replaces the standby processes.
+            p.setJavaScript(true);
+            os = new ByteArrayOutputStream();
+            assertTrue(p.convert(new ByteArrayInputStream("<p>standby</p>".getBytes(StandardCharsets.UTF_8)), os));
+            assertEquals(1024, os.size());
+            awaitStandby(p, 2);
+        } finally {
+            p.stopStandby();
+        }
+        assertEquals(0, p.getStandbyReadyCount());
+    }
+
+    private static void awaitStandby(Prince p, int count) throws InterruptedException {
+        for (int i = 0; i < 1000 && p.getStandbyReadyCount() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, p.getStandbyReadyCount());
+    }
+
+    @Test
+    void testControlCrash() throws IOException {
+        String princePath = new PrinceSimulator.Options()
+                .setCrashProbability(1)
+                .createLauncher(dir);
+        PrinceControl p = new PrinceControl(princePath);
+        p.start();
+
+        IOException e = assertThrows(IOException.class, () -> p.convert("doc.html", new ByteArrayOutputStream()));
+        // The last output on stderr explains the crash.
+        assertEquals(1, e.getSuppressed().length);
+        assertTrue(e.getSuppressed()[0].getMessage().endsWith("prince: error: simulated crash"));
+        assertEquals("prince: error: simulated crash", p.getStderrTail());
+        // The pipe to the dead process may or may not be broken by now.
+        try {
+            p.stop();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Test
+    void testControlGracefulStop() throws Exception {
+        String princePath = new PrinceSimulator.Options()
+                .setLatency(300)
+                .createLauncher(dir);
+        PrinceControl p = new PrinceControl(princePath);
+        p.start();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<Boolean> result =
+                    executor.submit(() -> p.convert("doc.html", new ByteArrayOutputStream()));
+            Thread.sleep(100);
+
+            // The running job finishes, and later jobs are rejected.
+            assertTrue(p.stop(10000));
+            assertTrue(result.get());
+            assertThrows(RuntimeException.class, () -> p.convert("doc.html", new ByteArrayOutputStream()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testControlStopKillsHungJob() throws Exception {
+        String princePath = new PrinceSimulator.Options()
+                .setHangProbability(1)
+                .createLauncher(dir);
+        PrinceControl p = new PrinceControl(princePath);
+        p.start();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<Boolean> result =
+                    executor.submit(() -> p.convert("doc.html", new ByteArrayOutputStream()));
+            Thread.sleep(100);
+
+            assertFalse(p.stop(200));
+            ExecutionException e =
+                    assertThrows(ExecutionException.class, result::get);
+            assertTrue(e.getCause() instanceof IOException);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
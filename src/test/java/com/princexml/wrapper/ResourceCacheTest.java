@@ -0,0 +1,113 @@
+package com.princexml.wrapper;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceCacheTest {
+    private static final byte[] CSS = "p { color: red }".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private String base;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger bodies = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/css/", exchange -> {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith("/missing.css")) {
+                exchange.sendResponseHeaders(404, -1);
+            } else if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                bodies.incrementAndGet();
+                exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(200, CSS.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(CSS);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort() + "/css/";
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void fetchOncePerTtl() throws IOException {
+        try (ResourceCache cache = new ResourceCache(dir)) {
+            Path path = cache.fetch(base + "style.css");
+            assertArrayEquals(CSS, Files.readAllBytes(path));
+            assertEquals("style.css", path.getFileName().toString());
+
+            assertEquals(path, cache.fetch(base + "style.css"));
+            assertEquals(1, requests.get());
+        }
+    }
+
+    @Test
+    void revalidateAfterTtl() throws IOException {
+        try (ResourceCache cache = new ResourceCache(dir)) {
+            cache.setTtl(0);
+            cache.fetch(base + "style.css");
+            Path path = cache.fetch(base + "style.css");
+
+            assertArrayEquals(CSS, Files.readAllBytes(path));
+            assertEquals(2, requests.get());
+            assertEquals(1, bodies.get());
+        }
+    }
+
+    @Test
+    void staleCopyOnError() throws IOException {
+        try (ResourceCache cache = new ResourceCache(dir)) {
+            cache.setTtl(0);
+            Path path = cache.fetch(base + "style.css");
+            server.stop(0);
+
+            assertEquals(path, cache.fetch(base + "style.css"));
+            assertThrows(IOException.class, () -> cache.fetch(base + "other.css"));
+        }
+    }
+
+    @Test
+    void prefetchAndRemap() throws IOException {
+        try (ResourceCache cache = new ResourceCache(dir)) {
+            Map<String, Path> paths = cache.prefetch(Arrays.asList(base + "a.css", base + "b.css", base + "a.css"));
+            assertEquals(2, paths.size());
+            assertEquals(paths.get(base + "a.css").getParent(), paths.get(base + "b.css").getParent());
+
+            assertThrows(IOException.class, () -> cache.prefetch(Arrays.asList(base + "a.css", base + "missing.css")));
+
+            Prince prince = new Prince("prince");
+            cache.addRemaps(prince, Arrays.asList(base + "a.css", base + "b.css", base + "c.css?v=2"));
+            String remap = CommandLine.toCommand("remap", base + "=" + paths.get(base + "a.css").getParent());
+            assertEquals(1, prince.getJobCommandLine("normal").stream().filter(remap::equals).count());
+        }
+    }
+}
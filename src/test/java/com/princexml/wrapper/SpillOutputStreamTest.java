@@ -0,0 +1,102 @@
+package com.princexml.wrapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillOutputStreamTest {
+    @TempDir
+    Path dir;
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ('a' + i % 26);
+        }
+        return data;
+    }
+
+    private static String chunk(JobResource resource) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resource.writeChunk(out, "dat");
+        return out.toString("US-ASCII");
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void inMemory() throws IOException {
+        SpillOutputStream out = new SpillOutputStream(100, dir);
+        out.write(data(100));
+        out.close();
+
+        JobResource resource = out.toJobResource();
+        assertEquals(100, resource.length());
+        assertEquals("dat 100\n" + new String(data(100), "US-ASCII") + "\n", chunk(resource));
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void spilled() throws IOException {
+        SpillOutputStream out = new SpillOutputStream(100, dir);
+        out.write(data(60));
+        out.write(data(60));
+        out.write('!');
+        out.close();
+
+        JobResource resource = out.toJobResource();
+        assertEquals(121, resource.length());
+        String data = new String(data(60), "US-ASCII");
+        assertEquals("dat 121\n" + data + data + "!\n", chunk(resource));
+        assertEquals(1, countFiles());
+
+        resource.release();
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void discard() throws IOException {
+        SpillOutputStream out = new SpillOutputStream(10, dir);
+        out.write(data(20));
+        assertEquals(1, countFiles());
+
+        out.discard();
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void reservation() throws IOException {
+        MemoryBudget budget = new MemoryBudget(20000);
+        MemoryBudget.Reservation r = budget.reserve(0);
+
+        SpillOutputStream out = new SpillOutputStream(Long.MAX_VALUE, dir, r);
+        // The initial buffer counts against the budget.
+        assertEquals(8192, budget.getUsed());
+        for (int i = 0; i < 10000; i++) {
+            out.write('a');
+        }
+        assertEquals(16384, budget.getUsed());
+        assertEquals(0, countFiles());
+
+        // The buffer is given back once it has been spilled.
+        out.write(data(10000));
+        assertEquals(1, countFiles());
+        assertEquals(0, budget.getUsed());
+
+        out.close();
+        assertEquals(20000, out.toJobResource().length());
+        out.discard();
+        r.close();
+    }
+}
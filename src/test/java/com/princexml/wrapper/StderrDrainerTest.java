@@ -0,0 +1,30 @@
+package com.princexml.wrapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StderrDrainerTest {
+    @Test
+    void keepsTheMostRecentLines() throws InterruptedException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("line ").append(i).append('\n');
+        }
+        sb.append("a very long last line\n");
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+
+        StderrDrainer drainer = new StderrDrainer(
+                new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)), 30, handled::add);
+        drainer.awaitEnd(5000);
+
+        assertEquals(101, handled.size());
+        assertEquals("line 99\na very long last line", drainer.getTail());
+    }
+}